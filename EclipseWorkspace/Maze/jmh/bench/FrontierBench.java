@@ -0,0 +1,51 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// times a corner to corner solve of a size x size maze with the boxed LinkedList
+// frontier the game used to step through, against the Solver and its IntDeque;
+// run with -prof gc to see the bytes each allocates per solve
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrontierBench {
+  @Param({"1000", "2000"})
+  int size;
+
+  @Param({"bfs", "dfs"})
+  String search;
+
+  Supplier<Object> linked;
+  Supplier<Object> deque;
+
+  @Setup
+  public void setup() throws Exception {
+    this.linked = Targets.of(this.search + "Linked", this.size);
+    this.deque = Targets.of(this.search, this.size);
+  }
+
+  @Benchmark
+  public Object linkedList() {
+    return this.linked.get();
+  }
+
+  @Benchmark
+  public Object intDeque() {
+    return this.deque.get();
+  }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// times each phase of making and using a size x size maze: the grid, the edge
+// weights, the spanning tree, a solve with each search and a whole frame of the scene
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PhasesBench {
+  @Param({"200", "1000", "2000"})
+  int size;
+
+  Supplier<Object> makeGrid;
+  Supplier<Object> initEdges;
+  Supplier<Object> krusAlg;
+  Supplier<Object> bfs;
+  Supplier<Object> dfs;
+  Supplier<Object> makeScene;
+
+  @Setup
+  public void setup() throws Exception {
+    this.makeGrid = Targets.of("makeGrid", this.size);
+    this.initEdges = Targets.of("initEdges", this.size);
+    this.krusAlg = Targets.of("krusAlg", this.size);
+    this.bfs = Targets.of("bfs", this.size);
+    this.dfs = Targets.of("dfs", this.size);
+    this.makeScene = Targets.of("makeScene", this.size);
+  }
+
+  @Benchmark
+  public Object makeGrid() {
+    return this.makeGrid.get();
+  }
+
+  @Benchmark
+  public Object initEdges() {
+    return this.initEdges.get();
+  }
+
+  @Benchmark
+  public Object krusAlg() {
+    return this.krusAlg.get();
+  }
+
+  @Benchmark
+  public Object bfsSolve() {
+    return this.bfs.get();
+  }
+
+  @Benchmark
+  public Object dfsSolve() {
+    return this.dfs.get();
+  }
+
+  @Benchmark
+  public Object makeScene() {
+    return this.makeScene.get();
+  }
+}
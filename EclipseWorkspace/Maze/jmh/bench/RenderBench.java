@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// times building a whole frame of a size x size maze and painting it into an
+// offscreen image, with one image per wall against one raster with merged runs
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx4g"})
+public class RenderBench {
+  @Param({"200", "1000", "4000"})
+  int size;
+
+  Supplier<Object> scene;
+  Supplier<Object> raster;
+
+  @Setup
+  public void setup() throws Exception {
+    this.scene = Targets.of("sceneFrame", this.size);
+    this.raster = Targets.of("rasterFrame", this.size);
+  }
+
+  @Benchmark
+  public Object imagePerWall() {
+    return this.scene.get();
+  }
+
+  @Benchmark
+  public Object raster() {
+    return this.raster.get();
+  }
+}
@@ -0,0 +1,19 @@
+package bench;
+
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+// finds the work to time in BenchTargets, which sits in the default package with the
+// rest of the maze and so can only be reached by name from here
+final class Targets {
+  private Targets() {
+  }
+
+  // produces the named work, set up on a size x size maze
+  @SuppressWarnings("unchecked")
+  static Supplier<Object> of(String name, int size) throws Exception {
+    Method of = Class.forName("BenchTargets").getDeclaredMethod("of", String.class, int.class);
+    of.setAccessible(true);
+    return (Supplier<Object>) of.invoke(null, name, size);
+  }
+}
@@ -0,0 +1,120 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.function.Supplier;
+import javalib.worldcanvas.WorldSceneBase;
+import javalib.impworld.WorldScene;
+
+// produces the work the JMH benchmarks under jmh/ time, set up on a size x size maze
+// ahead of time; JMH only runs benchmarks that live in a package, and those cannot
+// name the classes here in the default package, so they look up BenchTargets.of by
+// name and call the plain Supplier it hands back
+class BenchTargets {
+
+  // produces the named work on a fresh size x size maze, one of:
+  //   makeGrid, initEdges, krusAlg, bfs, dfs, makeScene   the phases of the game
+  //   bfsLinked, dfsLinked                                 the old LinkedList frontier
+  //   sceneFrame, rasterFrame                              a frame built and painted
+  static Supplier<Object> of(String name, int size) throws Exception {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    int goal = world.grid.cells() - 1;
+    if (name.equals("makeGrid")) {
+      return () -> world.makeGrid();
+    }
+    else if (name.equals("initEdges")) {
+      return () -> world.initEdges();
+    }
+    else if (name.equals("krusAlg")) {
+      // clearing the walls is timed too, but it is a fill of one bit a wall
+      return () -> {
+        world.grid.clear();
+        world.krusAlg();
+        return world.grid;
+      };
+    }
+    else if (name.equals("bfs")) {
+      return () -> world.solver.solve(world.grid, new BfsAdd(), 0, goal);
+    }
+    else if (name.equals("dfs")) {
+      return () -> world.solver.solve(world.grid, new DfsAdd(), 0, goal);
+    }
+    else if (name.equals("makeScene")) {
+      return () -> {
+        world.scene = null;
+        return world.makeScene();
+      };
+    }
+    else if (name.equals("bfsLinked")) {
+      return () -> linkedSolve(world.grid, false);
+    }
+    else if (name.equals("dfsLinked")) {
+      return () -> linkedSolve(world.grid, true);
+    }
+    else if (name.equals("sceneFrame")) {
+      return frame(world, new SceneRenderer());
+    }
+    else if (name.equals("rasterFrame")) {
+      return frame(world, new RasterRenderer());
+    }
+    else {
+      throw new IllegalArgumentException("Unknown target: " + name);
+    }
+  }
+
+  // produces the work of building a whole frame of the world with the renderer and
+  // painting it into an offscreen image; cells shrink on bigger mazes so that the
+  // frame stays within 8000 pixels a side
+  static Supplier<Object> frame(MazeWorld world, MazeRenderer renderer) throws Exception {
+    Method draw = WorldSceneBase.class.getDeclaredMethod("draw", Graphics2D.class);
+    draw.setAccessible(true);
+    world.nodeSize = Math.max(2, Math.min(10, 8000 / world.width));
+    world.renderer = renderer;
+    BufferedImage canvas = new BufferedImage(world.width * world.nodeSize,
+        world.height * world.nodeSize, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = canvas.createGraphics();
+    return () -> {
+      world.scene = null;
+      WorldScene scene = world.makeScene();
+      try {
+        draw.invoke(scene, g);
+      }
+      catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(e);
+      }
+      return canvas;
+    };
+  }
+
+  // solves the grid the way MazeWorld.search used to, with a boxed LinkedList
+  // frontier and a HashMap of parents, and produces the number of cells expanded
+  static int linkedSolve(MazeGrid grid, boolean first) {
+    LinkedList<Integer> work = new LinkedList<Integer>();
+    HashMap<Integer, Integer> parents = new HashMap<Integer, Integer>();
+    LinkedList<Integer> searched = new LinkedList<Integer>();
+    int end = grid.cells() - 1;
+    work.add(0);
+    parents.put(0, null);
+    while (work.size() > 0) {
+      int current = work.remove();
+      if (current == end) {
+        break;
+      }
+      searched.add(current);
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        int next = grid.neighbor(current, dir);
+        if (next >= 0 && !parents.containsKey(next)) {
+          parents.put(next, current);
+          if (first) {
+            work.addFirst(next);
+          }
+          else {
+            work.addLast(next);
+          }
+        }
+      }
+    }
+    return searched.size();
+  }
+}
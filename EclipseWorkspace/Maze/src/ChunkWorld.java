@@ -0,0 +1,373 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import javalib.impworld.*;
+import javalib.worldimages.*;
+import tester.*;
+
+// represents one square chunk of an endless maze: a spanning tree of its own cells
+// made by Kruskal's algorithm, with one door in its right edge and one in its bottom
+// edge leading into the chunks beside and below it, and the cells walked on in it
+class Chunk {
+  MazeGrid grid;
+  int eastDoor;
+  int southDoor;
+  byte[] shade;
+
+  Chunk(MazeGrid grid, int eastDoor, int southDoor) {
+    this.grid = grid;
+    this.eastDoor = eastDoor;
+    this.southDoor = southDoor;
+    this.shade = new byte[grid.cells()];
+  }
+}
+
+// represents an endless plane of cells cut into size x size chunks, each made from
+// the seed and its chunk coordinates whenever it is asked for, and kept in a cache
+// that drops the chunk used longest ago once it holds more than capacity of them
+class ChunkMap {
+  static final int EAST = 0;
+  static final int SOUTH = 1;
+
+  long seed;
+  int size;
+  int capacity;
+  LinkedHashMap<Long, Chunk> chunks;
+  MazeMetrics metrics;
+
+  ChunkMap(long seed, int size, int capacity, MazeMetrics metrics) {
+    if (size < 2 || capacity < 1) {
+      throw new IllegalArgumentException("Invalid chunk size");
+    }
+    this.seed = seed;
+    this.size = size;
+    this.capacity = capacity;
+    this.metrics = metrics;
+    this.chunks = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+        if (this.size() > capacity) {
+          metrics.add("chunks.evicted", 1);
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  // produces the key of the chunk at the given chunk coordinates
+  long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+  // produces the random numbers the chunk at the given chunk coordinates is made from,
+  // the same every time for the same seed
+  SplittableRandom random(int cx, int cy) {
+    return new SplittableRandom(this.seed ^ (cx * 0x9E3779B97F4A7C15L)
+        ^ (cy * 0xC2B2AE3D27D4EB4FL));
+  }
+
+  // produces the row of the door in the right edge (EAST) or the column of the door in
+  // the bottom edge (SOUTH) of the chunk, without making the chunk
+  int door(int cx, int cy, int side) {
+    SplittableRandom rand = this.random(cx, cy);
+    int east = rand.nextInt(this.size);
+    return side == EAST ? east : rand.nextInt(this.size);
+  }
+
+  // produces the chunk at the given chunk coordinates, making it if it is not held
+  Chunk chunk(int cx, int cy) {
+    long key = this.key(cx, cy);
+    Chunk chunk = this.chunks.get(key);
+    if (chunk == null) {
+      this.metrics.time("chunk", () -> this.chunks.put(key, this.make(cx, cy)));
+      this.metrics.add("chunks.generated", 1);
+      chunk = this.chunks.get(key);
+    }
+    return chunk;
+  }
+
+  // produces a new chunk for the given chunk coordinates, drawing its doors and then
+  // its edge weights in order from its random numbers and spanning them with Kruskal
+  Chunk make(int cx, int cy) {
+    SplittableRandom rand = this.random(cx, cy);
+    int east = rand.nextInt(this.size);
+    int south = rand.nextInt(this.size);
+    MazeGrid grid = new MazeGrid(this.size, this.size);
+    int[] weights = new int[this.size * this.size * 2];
+    for (int cell = 0; cell < grid.cells(); cell++) {
+      weights[cell * 2] = grid.xOf(cell) < this.size - 1 ? rand.nextInt(100) : -1;
+      weights[cell * 2 + 1] = grid.yOf(cell) < this.size - 1 ? rand.nextInt(100) : -1;
+    }
+    new KruskalTree().span(grid, weights, 100);
+    return new Chunk(grid, east, south);
+  }
+
+  // produces the chunk holding the cell at the given coordinates
+  Chunk chunkAt(int x, int y) {
+    return this.chunk(Math.floorDiv(x, this.size), Math.floorDiv(y, this.size));
+  }
+
+  // produces the index of the cell at the given coordinates within its chunk
+  int local(int x, int y) {
+    return Math.floorMod(y, this.size) * this.size + Math.floorMod(x, this.size);
+  }
+
+  // checks if the cell at the given coordinates has no wall in the given direction,
+  // crossing into the next chunk only through its door
+  boolean isOpen(int x, int y, int dir) {
+    if (dir == MazeGrid.LEFT) {
+      return this.isOpen(x - 1, y, MazeGrid.RIGHT);
+    }
+    else if (dir == MazeGrid.UP) {
+      return this.isOpen(x, y - 1, MazeGrid.DOWN);
+    }
+    int cx = Math.floorDiv(x, this.size);
+    int cy = Math.floorDiv(y, this.size);
+    if (dir == MazeGrid.RIGHT && Math.floorMod(x, this.size) == this.size - 1) {
+      return Math.floorMod(y, this.size) == this.door(cx, cy, EAST);
+    }
+    else if (dir == MazeGrid.DOWN && Math.floorMod(y, this.size) == this.size - 1) {
+      return Math.floorMod(x, this.size) == this.door(cx, cy, SOUTH);
+    }
+    else {
+      return this.chunk(cx, cy).grid.neighbor(this.local(x, y), dir) >= 0;
+    }
+  }
+
+  // EFFECT: makes every chunk overlapping the given box of cells, so they are ready
+  // before they come into view
+  void prefetch(int left, int top, int right, int bottom) {
+    for (int cy = Math.floorDiv(top, this.size); cy <= Math.floorDiv(bottom, this.size); cy++) {
+      for (int cx = Math.floorDiv(left, this.size); cx <= Math.floorDiv(right, this.size);
+          cx++) {
+        this.chunk(cx, cy);
+      }
+    }
+  }
+}
+
+// represents a game on an endless maze, drawn through a window centered on the
+// player; the chunks in and one chunk around the window are made as the player
+// nears them, and chunks far behind are dropped, taking what was walked on in them
+class ChunkWorld extends World {
+  ChunkMap chunks;
+  int playerX;
+  int playerY;
+  int pixelWidth;
+  int pixelHeight;
+  int nodeSize;
+  MazeMetrics metrics;
+  WorldScene scene;
+  ComputedPixelImage image;
+  boolean drawn;
+
+  ChunkWorld(long seed) {
+    this(seed, 32, 800, 800, 10);
+  }
+
+  // constructor with the chunk size and the window in pixels; the cache holds the
+  // chunks around the window twice over, so walking back and forth does not remake them
+  ChunkWorld(long seed, int chunkSize, int pixelWidth, int pixelHeight, int nodeSize) {
+    this.metrics = new MazeMetrics();
+    this.pixelWidth = pixelWidth;
+    this.pixelHeight = pixelHeight;
+    this.nodeSize = nodeSize;
+    int across = pixelWidth / nodeSize / chunkSize + 3;
+    int down = pixelHeight / nodeSize / chunkSize + 3;
+    this.chunks = new ChunkMap(seed, chunkSize, across * down * 2, this.metrics);
+    this.playerX = 0;
+    this.playerY = 0;
+    this.prefetch();
+  }
+
+  // produces the column of the leftmost cell in the window
+  int left() {
+    return this.playerX - this.pixelWidth / this.nodeSize / 2;
+  }
+
+  // produces the row of the topmost cell in the window
+  int top() {
+    return this.playerY - this.pixelHeight / this.nodeSize / 2;
+  }
+
+  // EFFECT: makes the chunks in the window and within a chunk of its edges
+  void prefetch() {
+    int size = this.chunks.size;
+    this.chunks.prefetch(this.left() - size, this.top() - size,
+        this.left() + this.pixelWidth / this.nodeSize + size,
+        this.top() + this.pixelHeight / this.nodeSize + size);
+  }
+
+  // moves the player with the arrow keys through open walls
+  public void onKeyEvent(String k) {
+    if (k.equals("right") && this.chunks.isOpen(this.playerX, this.playerY, MazeGrid.RIGHT)) {
+      this.movePlayer(this.playerX + 1, this.playerY);
+    }
+    if (k.equals("down") && this.chunks.isOpen(this.playerX, this.playerY, MazeGrid.DOWN)) {
+      this.movePlayer(this.playerX, this.playerY + 1);
+    }
+    if (k.equals("left") && this.chunks.isOpen(this.playerX, this.playerY, MazeGrid.LEFT)) {
+      this.movePlayer(this.playerX - 1, this.playerY);
+    }
+    if (k.equals("up") && this.chunks.isOpen(this.playerX, this.playerY, MazeGrid.UP)) {
+      this.movePlayer(this.playerX, this.playerY - 1);
+    }
+  }
+
+  // EFFECT: marks the player's cell as walked on and moves them to the given cell,
+  // making the chunks the window is coming up to
+  void movePlayer(int x, int y) {
+    this.chunks.chunkAt(this.playerX, this.playerY).shade[
+        this.chunks.local(this.playerX, this.playerY)] = 1;
+    this.playerX = x;
+    this.playerY = y;
+    this.prefetch();
+    this.drawn = false;
+  }
+
+  // draws the window around the player, again only after they move
+  public WorldScene makeScene() {
+    if (this.scene == null) {
+      this.scene = new WorldScene(this.pixelWidth, this.pixelHeight);
+      this.image = new ComputedPixelImage(this.pixelWidth, this.pixelHeight);
+      this.scene.placeImageXY(this.image, this.pixelWidth / 2, this.pixelHeight / 2);
+    }
+    if (!this.drawn) {
+      this.metrics.time("makeScene", () -> this.redraw());
+      this.drawn = true;
+    }
+    return this.scene;
+  }
+
+  // EFFECT: paints every cell in the window, with the start and the player over them
+  void redraw() {
+    int size = this.nodeSize;
+    int left = this.left();
+    int top = this.top();
+    for (int y = 0; y * size < this.pixelHeight; y++) {
+      for (int x = 0; x * size < this.pixelWidth; x++) {
+        int gx = left + x;
+        int gy = top + y;
+        int shade = this.chunks.chunkAt(gx, gy).shade[this.chunks.local(gx, gy)];
+        if (gx == 0 && gy == 0) {
+          shade = 5;
+        }
+        if (gx == this.playerX && gy == this.playerY) {
+          shade = 6;
+        }
+        int w = Math.min(size, this.pixelWidth - x * size);
+        int h = Math.min(size, this.pixelHeight - y * size);
+        this.image.setPixels(x * size, y * size, w, h, MazeRenderer.SHADES[shade]);
+        if (w == size && !this.chunks.isOpen(gx, gy, MazeGrid.RIGHT)) {
+          this.image.setPixels(x * size + size - 1, y * size, 1, h, Color.gray);
+        }
+        if (h == size && !this.chunks.isOpen(gx, gy, MazeGrid.DOWN)) {
+          this.image.setPixels(x * size, y * size + size - 1, w, 1, Color.gray);
+        }
+      }
+    }
+  }
+}
+
+// represents examples of the endless chunked maze
+class ExamplesChunkWorld {
+  // tests that ChunkMap makes each chunk once, the same from the same seed
+  void testChunks(Tester t) {
+    ChunkMap map = new ChunkMap(7, 16, 4, new MazeMetrics());
+    Chunk home = map.chunk(0, 0);
+    t.checkExpect(home.grid.opened, 16 * 16 - 1);
+    t.checkExpect(map.chunk(0, 0) == home, true);
+    t.checkExpect(map.metrics.get("chunks.generated"), 1L);
+    t.checkExpect(new ChunkMap(7, 16, 4, new MazeMetrics()).chunk(0, 0).grid.passages,
+        home.grid.passages);
+    t.checkExpect(Arrays.equals(map.chunk(-1, 0).grid.passages, home.grid.passages), false);
+    t.checkExpect(map.door(0, 0, ChunkMap.EAST), home.eastDoor);
+    t.checkExpect(map.door(0, 0, ChunkMap.SOUTH), home.southDoor);
+    t.checkExpect(map.key(-1, 0) != map.key(0, -1), true);
+    t.checkConstructorException(new IllegalArgumentException("Invalid chunk size"),
+        "ChunkMap", 1L, 1, 4, new MazeMetrics());
+  }
+
+  // tests that ChunkMap drops the chunks used least recently and remakes them the same
+  void testEviction(Tester t) {
+    ChunkMap map = new ChunkMap(3, 8, 4, new MazeMetrics());
+    long[] first = map.chunk(0, 0).grid.passages;
+    for (int cx = 1; cx <= 9; cx++) {
+      map.chunk(cx, 0);
+    }
+    t.checkExpect(map.chunks.size(), 4);
+    t.checkExpect(map.metrics.get("chunks.evicted"), 6L);
+    t.checkExpect(map.chunks.containsKey(map.key(0, 0)), false);
+    // a chunk made again after it was dropped is the same maze
+    t.checkExpect(map.chunk(0, 0).grid.passages, first);
+    map.chunk(9, 0);
+    map.chunk(10, 0);
+    t.checkExpect(map.chunks.containsKey(map.key(9, 0)), true);
+  }
+
+  // tests that the doors between chunks join them into one connected maze
+  void testStitching(Tester t) {
+    ChunkMap map = new ChunkMap(11, 6, 16, new MazeMetrics());
+    // every cell of 3 x 3 chunks around the origin is reached from its corner
+    int span = 18;
+    boolean[] seen = new boolean[span * span];
+    IntDeque work = new IntDeque();
+    work.addLast(0);
+    seen[0] = true;
+    int reached = 0;
+    int[] dx = {-1, 0, 1, 0};
+    int[] dy = {0, -1, 0, 1};
+    while (!work.isEmpty()) {
+      int cell = work.removeFirst();
+      reached++;
+      int x = cell % span;
+      int y = cell / span;
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        int nx = x + dx[dir];
+        int ny = y + dy[dir];
+        if (nx >= 0 && ny >= 0 && nx < span && ny < span && !seen[ny * span + nx]
+            && map.isOpen(x - 6, y - 6, dir)) {
+          seen[ny * span + nx] = true;
+          work.addLast(ny * span + nx);
+        }
+      }
+    }
+    t.checkExpect(reached, span * span);
+    int door = map.door(-1, 0, ChunkMap.EAST);
+    t.checkExpect(map.isOpen(-1, door, MazeGrid.RIGHT), true);
+    t.checkExpect(map.isOpen(0, door, MazeGrid.LEFT), true);
+    t.checkExpect(map.isOpen(0, (door + 1) % 6, MazeGrid.LEFT), false);
+  }
+
+  // tests that ChunkWorld draws the chunks around the player and roams between them
+  void testChunkWorld(Tester t) {
+    ChunkWorld w = new ChunkWorld(5, 8, 160, 80, 10);
+    // the window is 16 x 8 cells from (-8, -4), so with a chunk around it, chunks -2
+    // to 2 across and -2 to 1 down are made
+    t.checkExpect(w.metrics.get("chunks.generated"), 5L * 4);
+    t.checkExpect(w.chunks.chunks.size() <= w.chunks.capacity, true);
+    WorldScene scene = w.makeScene();
+    t.checkExpect(scene.width, 160);
+    t.checkExpect(w.image.getPixel(80, 40), Color.RED);
+    t.checkExpect(w.makeScene() == scene, true);
+    w.onKeyEvent("right");
+    w.onKeyEvent("down");
+    int moved = Math.abs(w.playerX) + Math.abs(w.playerY);
+    t.checkExpect(moved <= 2, true);
+    // roaming far to the right makes new chunks ahead and drops those left behind
+    for (int i = 0; i < 400; i++) {
+      w.movePlayer(w.playerX + 1, w.playerY);
+    }
+    t.checkExpect(w.metrics.get("chunks.generated") > w.chunks.capacity, true);
+    t.checkExpect(w.chunks.chunks.size() <= w.chunks.capacity, true);
+    t.checkExpect(w.chunks.chunks.containsKey(w.chunks.key(-2, 0)), false);
+    t.checkExpect(w.chunks.chunks.containsKey(w.chunks.key(51, 0)), true);
+    t.checkExpect(w.chunks.chunkAt(w.playerX - 1, w.playerY)
+        .shade[w.chunks.local(w.playerX - 1, w.playerY)], (byte) 1);
+    w.makeScene();
+    t.checkExpect(w.image.getPixel(80, 40), Color.RED);
+    t.checkExpect(w.metrics.get("makeScene.runs"), 2L);
+  }
+}
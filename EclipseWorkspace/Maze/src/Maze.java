@@ -1,40 +1,40 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import tester.*;
 import javalib.impworld.*;
+import javalib.worldcanvas.WorldSceneBase;
 import java.awt.Color;
 import javalib.worldimages.*;
 
-// represents nodes of the maze
+// represents a view of one cell of the maze, built on demand from a MazeGrid
 class MazeNode {
-  Edge right;
-  Edge bottom;
-  Edge left;
-  Edge top;
-  boolean rightBlocked;
-  boolean downBlocked;
   int x;
   int y;
-  boolean seen;
+  boolean rightBlocked;
+  boolean downBlocked;
 
   MazeNode(int x, int y) {
-    this(x, y, null, null, null, null);
+    this(x, y, true, true);
   }
 
-  MazeNode(int x, int y, Edge right, Edge left, Edge top, Edge bottom) {
+  MazeNode(int x, int y, boolean rightBlocked, boolean downBlocked) {
     this.x = x;
     this.y = y;
-    this.rightBlocked = true;
-    this.downBlocked = true;
-    this.seen = false;
-    this.right = right;
-    this.left = left;
-    this.top = top;
-    this.bottom = bottom;
+    this.rightBlocked = rightBlocked;
+    this.downBlocked = downBlocked;
   }
 
   // draws the walls of the maze
@@ -55,271 +55,344 @@ class MazeNode {
 
   //produces a hashcode for this node
   public int hashCode() {
-    return this.x * this.y * 100;
+    return (this.y << 16) ^ this.x;
   }
 }
 
-// represents the path of the maze
-class Edge implements Comparable<Edge> {
-  MazeNode from;
-  MazeNode to;
-  int weight;
+// represents the maze as a grid of cells indexed by y * width + x, with two wall bits
+// per cell: bit cell * 2 is the right wall and bit cell * 2 + 1 is the bottom wall,
+// and a set bit means that wall has been knocked down
+class MazeGrid {
+  static final int LEFT = 0;
+  static final int UP = 1;
+  static final int RIGHT = 2;
+  static final int DOWN = 3;
 
-  Edge(MazeNode from, MazeNode to, int weight) {
-    this.from = from;
-    this.to = to;
-    this.weight = weight;
+  int width;
+  int height;
+  long[] passages;
+  int opened;
+
+  MazeGrid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.passages = new long[(width * height * 2 + 63) / 64];
+    this.opened = 0;
   }
 
-  Edge(int weight) {
-    this.weight = weight;
+  // constructor for a grid whose walls are already known, such as one read from a file
+  MazeGrid(int width, int height, long[] passages, int opened) {
+    this.width = width;
+    this.height = height;
+    this.passages = passages;
+    this.opened = opened;
   }
 
-  Edge(MazeNode from, MazeNode to) {
-    this.from = from;
-    this.to = to;
+  // produces the number of cells in the grid
+  int cells() {
+    return this.width * this.height;
   }
 
-  // compares the weights of this edge and the given one
-  public int compareTo(Edge that) {
-    return this.weight - that.weight;
+  // produces the index of the cell at the given coordinates
+  int index(int x, int y) {
+    return y * this.width + x;
   }
-}
 
-// represents the maze
-class MazeWorld extends World {
-  MazeNode player; 
-  ArrayList<MazeNode> travelled; 
-  LinkedList<MazeNode> searched; 
-  LinkedList<MazeNode> work; 
-  LinkedList<MazeNode> path; 
-  MazeNode key;
-  boolean finished; 
-  boolean showPaths = true; 
-  ArrayList<ArrayList<MazeNode>> vertices; 
-  ArrayList<Edge> edges; 
-  ArrayList<Edge> worklist; 
-  HashMap<MazeNode, MazeNode> map;
-  HashMap<MazeNode, MazeNode> searchMap;
-  int hScale = 100; 
-  int vScale = 100; 
-  SearchAdd<MazeNode> addMethod; 
-  int height;
-  int width;
-  int nodeSize;
-  boolean searching = false; 
-  Random rand;
+  // produces the column of the given cell
+  int xOf(int cell) {
+    return cell % this.width;
+  }
 
-  MazeWorld(int width, int height) {
-    if (width < 2 || height < 2) {
-      throw new IllegalArgumentException("Invalid board size");
+  // produces the row of the given cell
+  int yOf(int cell) {
+    return cell / this.width;
+  }
+
+  // EFFECT: knocks down the wall of the given edge id
+  void open(int id) {
+    long bit = 1L << id;
+    if ((this.passages[id >>> 6] & bit) == 0) {
+      this.passages[id >>> 6] |= bit;
+      this.opened++;
     }
-    this.rand = new Random();
-    this.width = width;
-    this.height = height;
-    this.nodeSize = 10;
-    this.vertices = this.makeNodes();
-    this.key = this.vertices.get(0).get(0);
-    this.edges = new ArrayList<Edge>();
-    this.worklist = this.initEdges(this.vertices);
-    this.map = new HashMap<MazeNode, MazeNode>();
-    this.travelled = new ArrayList<MazeNode>();
-    this.searched = new LinkedList<MazeNode>();
-    this.work = new LinkedList<MazeNode>();
-    this.work.add(this.vertices.get(0).get(0));
-    this.path = new LinkedList<MazeNode>();
-    this.finished = false;
-    this.krusAlg();
-    this.setEdges(vertices);
-    this.searchMap = new HashMap<MazeNode, MazeNode>();
+  }
 
+  // checks if the wall of the given edge id has been knocked down
+  boolean isOpen(int id) {
+    return (this.passages[id >>> 6] & (1L << id)) != 0;
   }
 
-  // constructor with seed
-  MazeWorld(int width, int height, Random rand) {
-    this(width, height);
-    this.rand = rand;
+  // checks if the given cell has a wall on its right
+  boolean rightBlocked(int cell) {
+    return !this.isOpen(cell * 2);
   }
 
-  // makes the maze
-  public ArrayList<ArrayList<MazeNode>> makeNodes() {
-    ArrayList<ArrayList<MazeNode>> temp = new ArrayList<ArrayList<MazeNode>>();
-    for (int i = 0; i < height; i++) {
-      ArrayList<MazeNode> vertexList = new ArrayList<MazeNode>();
-      for (int j = 0; j < width; j++) {
-        vertexList.add(new MazeNode(j, i));
-      }
-      temp.add(vertexList);
+  // checks if the given cell has a wall below it
+  boolean downBlocked(int cell) {
+    return !this.isOpen(cell * 2 + 1);
+  }
+
+  // produces the cell reached by leaving the given cell in the given direction,
+  // or -1 if there is a wall in the way
+  int neighbor(int cell, int dir) {
+    if (dir == LEFT) {
+      return cell % this.width > 0 && this.isOpen(cell * 2 - 2) ? cell - 1 : -1;
+    }
+    else if (dir == UP) {
+      return cell >= this.width && this.isOpen((cell - this.width) * 2 + 1)
+          ? cell - this.width : -1;
+    }
+    else if (dir == RIGHT) {
+      return cell % this.width < this.width - 1 && this.isOpen(cell * 2) ? cell + 1 : -1;
+    }
+    else {
+      return cell < this.cells() - this.width && this.isOpen(cell * 2 + 1)
+          ? cell + this.width : -1;
     }
-    this.player = temp.get(0).get(0);
-    return temp;
   }
 
-  // makes the path 
-  public ArrayList<Edge> initEdges(ArrayList<ArrayList<MazeNode>> vert) {
-    ArrayList<Edge> arr = new ArrayList<Edge>();
+  // produces the direction of the step from a cell to a neighbor next to it
+  static int directionOf(int from, int to) {
+    return to == from - 1 ? LEFT : to == from + 1 ? RIGHT : to < from ? UP : DOWN;
+  }
+
+  // produces the edge weights of a maze of this size made from the given seed and
+  // scales, by packed edge id with -1 where there is no edge; it reads only the size,
+  // so mazes can be made off the event thread
+  int[] weights(long seed, int hScale, int vScale) {
+    int[] arr = new int[this.width * this.height * 2];
+    this.fillWeights(seed, hScale, vScale, arr);
+    return arr;
+  }
 
+  // EFFECT: writes the edge weights of a maze of this size made from the given seed
+  // and scales into arr, which holds two entries per cell
+  void fillWeights(long seed, int hScale, int vScale, int[] arr) {
+    SplittableRandom rand = new SplittableRandom(seed);
     for (int j = 0; j < this.height; j++) {
       for (int i = 0; i < this.width; i++) {
-        MazeNode current = vert.get(j).get(i);
-
+        int current = this.index(i, j);
         if (i < this.width - 1) { 
-          current.right = new Edge(current, vert.get(j).get(i + 1));
-          current.right.weight = this.rand.nextInt(this.vScale);
-          arr.add(current.right);
+          arr[current * 2] = rand.nextInt(vScale);
         }
         else { 
-          current.right = new Edge(current, null);
-        }
-
-        if (i > 0) { 
-          current.left = vert.get(j).get(i - 1).right;
+          arr[current * 2] = -1;
         }
-        else {
-          current.left = new Edge(null, current);
-        }
-
         if (j < this.height - 1) { 
-          current.bottom = new Edge(current, vert.get(j + 1).get(i));
-          current.bottom.weight = new Random().nextInt(this.hScale);
-          arr.add(current.bottom);
+          arr[current * 2 + 1] = rand.nextInt(hScale);
         }
         else { 
-          current.bottom = new Edge(current, null);
-        }
-
-        if (j > 0) {
-          current.top = vert.get(j - 1).get(i).bottom;
-        }
-        else {
-          current.top = new Edge(null, current);
+          arr[current * 2 + 1] = -1;
         }
       }
     }
-    return arr;
   }
 
-  // EFFECT: creates the MST
-  public void krusAlg() {
-    Collections.sort(worklist);
-    this.map = this.createHash();
-    while (!this.treeDone() && this.worklist.size() > 0) {
-      Edge edge = this.worklist.get(0);
-      MazeNode to = this.find(this.map, edge.to);
-      MazeNode from = this.find(this.map, edge.from);
-      if (this.find(map, to).equals(this.find(map, from))) {
-        this.worklist.remove(0);
-      }
-      else {
-        map.put(this.find(map, to), this.find(map, from));
+  // produces the number of longs the passage bits of the grid take
+  int words() {
+    return (int) ((this.cells() * 2L + 63) / 64);
+  }
 
-        this.edges.add(this.worklist.remove(0));
-      }
-    }
+  // EFFECT: puts the passage bits of the grid into the buffer, which must have room
+  // for words() longs
+  void putPassages(LongBuffer out) {
+    out.put(this.passages);
   }
 
-  // finds a representative given a key
-  MazeNode find(HashMap<MazeNode, MazeNode> map, MazeNode key) {
-    MazeNode val = map.get(key);
-    while (!map.get(val).equals(val)) {
-      val = map.get(val);
-    }
-    return map.get(val);
+  // EFFECT: closes every wall again, so the grid can hold another maze of its size
+  void clear() {
+    Arrays.fill(this.passages, 0L);
+    this.opened = 0;
   }
 
-  // EFFECT: changes whether node has walls on right or bottom
-  public void setEdges(ArrayList<ArrayList<MazeNode>> vert) {
-    for (ArrayList<MazeNode> array : vert) {
-      for (MazeNode vertex : array) {
-        if (this.edges.contains(vertex.right)) {
-          vertex.rightBlocked = false;
-        }
-        if (this.edges.contains(vertex.bottom)) {
-          vertex.downBlocked = false;
-        }
+  // produces a node view of the given cell
+  MazeNode node(int cell) {
+    return new MazeNode(this.xOf(cell), this.yOf(cell), this.rightBlocked(cell),
+        this.downBlocked(cell));
+  }
+
+  // produces node views of every cell, row by row
+  ArrayList<ArrayList<MazeNode>> nodes() {
+    ArrayList<ArrayList<MazeNode>> rows = new ArrayList<ArrayList<MazeNode>>();
+    for (int y = 0; y < this.height; y++) {
+      ArrayList<MazeNode> row = new ArrayList<MazeNode>();
+      for (int x = 0; x < this.width; x++) {
+        row.add(this.node(this.index(x, y)));
       }
+      rows.add(row);
     }
+    return rows;
+  }
+}
+
+// represents the maze
+class MazeWorld extends World {
+  int player; 
+  short[] visits; // times the player has left each cell, stopping at Short.MAX_VALUE
+  IntDeque stepped; // cells the player left since the last frame
+  IntDeque searched; 
+  IntDeque path; 
+  boolean finished; 
+  boolean showPaths = true; 
+  boolean animate = true; 
+  MazeGrid grid; 
+  int[] weights; 
+  SpanningTree tree; 
+  Solver solver; 
+  SearchResult result; 
+  int hScale = 100; 
+  int vScale = 100; 
+  SearchAdd addMethod; 
+  int height;
+  int width;
+  int nodeSize;
+  boolean searching = false; 
+  SplittableRandom seeds;
+  long seed;
+  WorldScene scene;
+  byte[] shade;
+  MazeRenderer renderer;
+  MazeGrid drawnGrid;
+  short[] drawnVisits;
+  IntDeque drawnSearched;
+  boolean heatmap = false;
+  boolean drawnHeatmap;
+  int searchedCount;
+  boolean drawnPath;
+  boolean drawnPaths;
+  int drawnPlayer;
+  MazeMetrics metrics;
+  DistanceField field;
+  TreeIndex index;
+  MazePool pool;
+  CompletableFuture<DistanceField> pendingField;
+  boolean precompute = false;
+  ReplayLog log;
+  TickBudget budget;
+
+  MazeWorld(int width, int height) {
+    this(width, height, new SplittableRandom().nextLong());
+  }
+
+  // constructor with seed, every maze made by this world follows from it
+  MazeWorld(int width, int height, long seed) {
+    this(width, height, seed, null);
+  }
+
+  // constructor for a maze already made from the given seed, such as one read from a
+  // file, which skips generating it; the mazes after it follow from the seed
+  MazeWorld(MazeGrid grid, long seed) {
+    this(grid.width, grid.height, seed, grid);
   }
 
-  // initialized the hashmap so all reps are themselves
-  public HashMap<MazeNode, MazeNode> createHash() {
-    for (MazeNode v : this.flattenArray(this.vertices)) {
-      map.put(v, v);
+  // constructor that generates the maze unless it is given one
+  MazeWorld(int width, int height, long seed, MazeGrid grid) {
+    if (width < 2 || height < 2) {
+      throw new IllegalArgumentException("Invalid board size");
+    }
+    this.seeds = new SplittableRandom(seed);
+    this.seed = seed;
+    this.width = width;
+    this.height = height;
+    this.nodeSize = 10;
+    this.metrics = new MazeMetrics();
+    this.tree = new KruskalTree();
+    this.renderer = new SceneRenderer();
+    this.stepped = new IntDeque();
+    this.searched = new IntDeque();
+    this.path = new IntDeque();
+    this.finished = false;
+    this.solver = new Solver();
+    this.budget = new TickBudget();
+    this.addMethod = new DfsAdd();
+    if (grid == null) {
+      this.generate();
     }
-    return map;
+    else {
+      this.grid = grid;
+    }
+    this.visits = new short[this.grid.cells()];
+  }
+
+  // EFFECT: makes the grid, its weights and its tree from the current seed, timing
+  // each phase and recording what the tree did
+  void generate() {
+    this.metrics.time("makeGrid", () -> this.grid = this.makeGrid());
+    this.metrics.time("initEdges", () -> this.weights = this.initEdges());
+    this.metrics.time("krusAlg", () -> this.krusAlg());
+    this.tree.report(this.metrics);
+    this.metrics.logSummary("makeGrid", "initEdges", "krusAlg");
+  }
+
+  // makes the maze
+  public MazeGrid makeGrid() {
+    this.player = 0;
+    return new MazeGrid(this.width, this.height);
+  }
+
+  // makes the path, producing the weight of every edge by its packed id
+  // (cell * 2 for the right edge, cell * 2 + 1 for the bottom edge, -1 if there is none),
+  // drawn in order from the seed of the current maze
+  public int[] initEdges() {
+    return this.grid.weights(this.seed, this.hScale, this.vScale);
+  }
+
+  // EFFECT: creates the MST
+  public void krusAlg() {
+    this.tree.span(this.grid, this.weights, Math.max(this.hScale, this.vScale));
   }
 
   // checks if MST is done
   public boolean treeDone() {
-    return (height * width) - 1 == this.edges.size();
+    return (height * width) - 1 == this.grid.opened;
+  }
+
+  // solves the maze from the top left to the bottom right corner with the chosen
+  // search, without stepping through it
+  SearchResult solve() {
+    return this.solver.solve(this.grid, this.addMethod, 0, this.grid.cells() - 1);
   }
 
-  // does BFS or DFS one node a time
+  // replays the solved search one node a time
   void search() {
-    MazeNode end = this.vertices.get(this.height - 1).get(this.width - 1);
-    MazeNode current = this.work.remove();
-    if (current != end) {
-      this.searched.add(current);
-
-      // checks the neighbors of the current search node
-      if (current.left.from != null 
-          && !this.searchMap.containsKey(current.left.from)
-          && !current.left.from.rightBlocked) {
-        this.searchMap.put(current.left.from, current);
-        this.addMethod.add(this.work, current.left.from);
-      } 
-      if (current.top.from != null 
-          && !this.searchMap.containsKey(current.top.from)
-          && !current.top.from.downBlocked) {
-        this.searchMap.put(current.top.from, current);
-        this.addMethod.add(this.work, current.top.from);
-      }
-      if (current.right.to != null 
-          && !this.searchMap.containsKey(current.right.to)
-          && !current.rightBlocked) {
-        this.searchMap.put(current.right.to, current);
-        this.addMethod.add(this.work, current.right.to);
-      }
-      if (current.bottom.to != null 
-          && !this.searchMap.containsKey(current.bottom.to)
-          && !current.downBlocked) {
-        this.searchMap.put(current.bottom.to, current);
-        this.addMethod.add(this.work, current.bottom.to);
+    if (this.searched.size() < this.result.expanded.length) {
+      int cell = this.result.expanded[this.searched.size()];
+      this.searched.addLast(cell);
+      if (this.log != null) {
+        this.log.expand(cell);
       }
     } 
     // correct path will be drawn
     else { 
       this.finished = true;
       this.searching = false;
-      this.backPath(current);
-    }
-  }
-
-  // goes back to start with shortest path
-  void backPath(MazeNode current) {
-    this.path = new LinkedList<MazeNode>();
-    path.addFirst(current);
-    while (current != this.vertices.get(0).get(0)) {
-      current = this.searchMap.get(current);
-      path.addFirst(current);
+      for (int v : this.result.path) {
+        this.path.addLast(v);
+      }
+      if (this.log != null) {
+        this.log.path(this.result.path);
+      }
     }
   }
 
   // processes user inputs and affects the game 
   public void onKeyEvent(String k) {
-    if (k.equals("right") && !this.player.rightBlocked && this.player.x < this.width - 1) {
-      this.movePlayer(this.player.y, this.player.x + 1);
+    if (this.log != null) {
+      this.log.key(k);
     }
-    if (k.equals("down") && !this.player.downBlocked && this.player.y < this.height - 1) {
-      this.movePlayer(this.player.y + 1, this.player.x);
+    int x = this.grid.xOf(this.player);
+    int y = this.grid.yOf(this.player);
+    if (k.equals("right") && this.grid.neighbor(this.player, MazeGrid.RIGHT) >= 0) {
+      this.movePlayer(y, x + 1);
     }
-    if (k.equals("left") && this.player.x > 0 && this.player.left.from != null
-        && !this.player.left.from.rightBlocked) {
-      this.movePlayer(this.player.y, this.player.x - 1);
+    if (k.equals("down") && this.grid.neighbor(this.player, MazeGrid.DOWN) >= 0) {
+      this.movePlayer(y + 1, x);
     }
-    if (k.equals("up") && this.player.y > 0 && this.player.top.from != null
-        && !this.player.top.from.downBlocked) {
-      this.movePlayer(this.player.y - 1, this.player.x);
+    if (k.equals("left") && this.grid.neighbor(this.player, MazeGrid.LEFT) >= 0) {
+      this.movePlayer(y, x - 1);
+    }
+    if (k.equals("up") && this.grid.neighbor(this.player, MazeGrid.UP) >= 0) {
+      this.movePlayer(y - 1, x);
     }
     if (k.equals("r")) { // r for rest
       this.newMaze();
@@ -330,12 +403,41 @@ class MazeWorld extends World {
       this.newMaze();
     }
     if (k.equals("b")) { // b for bfs
+      this.addMethod = new BfsAdd();
       this.resetSearch();
-      this.addMethod = new BfsAdd<MazeNode>();
     }
     if (k.equals("d")) { // d for dfs
+      this.addMethod = new DfsAdd();
+      this.resetSearch();
+    }
+    if (k.equals("a")) { // a for a* search
+      this.addMethod = new AStarAdd();
+      this.resetSearch();
+    }
+    if (k.equals("m")) { // m for bfs from both ends, meeting in the middle
+      this.addMethod = new BiBfsAdd();
       this.resetSearch();
-      this.addMethod = new DfsAdd<MazeNode>();
+    }
+    if (k.equals("p")) { // p to show the route from the player to the end
+      this.showRoute();
+    }
+    if (k.equals("q")) { // q to toggle making mazes ahead on a background thread
+      if (this.pool == null) {
+        this.pool = new MazePool(this, 2, 1);
+      }
+      else {
+        this.pool.shutdown();
+        this.pool = null;
+      }
+    }
+    if (k.equals("f")) { // f to toggle building each new maze's routes in the background
+      this.precompute = !this.precompute;
+    }
+    if (k.equals("i")) { // i to toggle showing solutions instantly instead of replaying them
+      this.animate = !this.animate;
+    }
+    if (k.equals("t")) { // t to toggle shading travelled cells by how often they were visited
+      this.heatmap = !this.heatmap;
     }
     if (k.equals("s")) { // p to toggle on and off the path showing
       this.showPaths = !this.showPaths;
@@ -350,173 +452,1690 @@ class MazeWorld extends World {
       this.vScale = 100;
       this.newMaze();
     }
+    if (k.equals("g")) { // g to switch between serial and parallel generation
+      if (this.tree instanceof KruskalTree) {
+        this.tree = new BoruvkaTree();
+      }
+      else {
+        this.tree = new KruskalTree();
+      }
+      this.newMaze();
+    }
+    if (k.equals("o")) { // o to switch between drawing walls one by one and as one raster
+      if (this.renderer instanceof SceneRenderer) {
+        this.renderer = new RasterRenderer();
+      }
+      else {
+        this.renderer = new SceneRenderer();
+      }
+      this.scene = null;
+    }
+    if (k.equals("c")) { // c to switch to a camera following the player, and back
+      if (this.renderer instanceof ViewportRenderer) {
+        this.renderer = new SceneRenderer();
+      }
+      else {
+        this.renderer = new ViewportRenderer(Math.min(this.width * this.nodeSize, 800),
+            Math.min(this.height * this.nodeSize, 800), 1);
+      }
+      this.scene = null;
+    }
+    if ((k.equals("=") || k.equals("+") || k.equals("-"))
+        && this.renderer instanceof ViewportRenderer) { // + and - to zoom the camera
+      ((ViewportRenderer) this.renderer).zoomBy(k.equals("-") ? 1 : -1);
+      this.scene = null;
+    }
+  }
+
+  // increments the world per tick
+  public void onTick() {
+    this.budget.tick(System.nanoTime());
+    if (this.log != null) {
+      this.log.tick();
+    }
+    if (this.searching) {
+      int steps = this.budget.steps();
+      long start = System.nanoTime();
+      int ran = 0;
+      for (; ran < steps && this.searching; ran++) {
+        this.search();
+      }
+      this.budget.ran(ran, System.nanoTime() - start);
+      this.metrics.set("tick.steps", ran);
+    } 
+  }
+
+  // EFFECT: opens the game window ticking every speed seconds, and paces the search
+  // to run as many steps a tick as fit in its budget
+  public void bigBang(int width, int height, double speed) {
+    this.budget.start((long) (speed * 1e9));
+    super.bigBang(width, height, speed);
+  }
+
+  // moves the player to given coordinates 
+  void movePlayer(int y, int x) {
+    this.visit(this.player);
+    int next = this.grid.index(x, y);
+    if (this.log != null) {
+      this.log.move(MazeGrid.directionOf(this.player, next));
+    }
+    this.player = next;
+  }
+
+  // EFFECT: counts one more visit to the cell and queues it to be painted
+  void visit(int cell) {
+    if (this.visits[cell] < Short.MAX_VALUE) {
+      this.visits[cell]++;
+    }
+    this.stepped.addLast(cell);
+  }
+
+  // resets the maze with the next seed of this world, or with the next maze made
+  // ahead by the pool for the current scales when there is one
+  void newMaze() {
+    if (this.grid instanceof PagedGrid) {
+      // the maze read from a file is being replaced, so the file can be let go
+      try {
+        ((PagedGrid) this.grid).close();
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("Cannot close maze file", e);
+      }
+    }
+    this.stepped.clear();
+    this.clearSearch();
+    ReadyMaze ready = this.pool == null ? null : this.pool.take(this.hScale, this.vScale);
+    if (ready == null) {
+      this.seed = this.seeds.nextLong();
+      this.generate();
+    }
+    else {
+      this.seed = ready.seed;
+      this.player = 0;
+      this.weights = null;
+      this.grid = ready.grid;
+    }
+    this.visits = new short[this.grid.cells()];
+    if (this.precompute) {
+      MazeGrid made = this.grid;
+      this.pendingField = CompletableFuture.supplyAsync(
+          () -> new DistanceField(made, made.cells() - 1));
+    }
+    if (this.log != null) {
+      this.log.maze(this.seed, this.hScale, this.vScale, this.player);
+    }
+  }
+
+  // produces the distance field toward the end of the current maze, taking the one
+  // built in the background after newMaze if there is one, or building it now
+  DistanceField field() {
+    if (this.field == null || this.field.grid != this.grid) {
+      if (this.pendingField != null) {
+        DistanceField built = this.pendingField.join();
+        this.pendingField = null;
+        this.field = built;
+      }
+      if (this.field == null || this.field.grid != this.grid) {
+        this.metrics.time("field",
+            () -> this.field = new DistanceField(this.grid, this.grid.cells() - 1));
+      }
+    }
+    return this.field;
+  }
+
+  // produces the index of the current maze for paths between any two cells,
+  // building it on first use
+  TreeIndex index() {
+    if (this.index == null || this.index.grid != this.grid) {
+      this.metrics.time("index", () -> this.index = new TreeIndex(this.grid));
+    }
+    return this.index;
+  }
+
+  // produces the direction of the player's next step toward the end, or -1 if they
+  // are there
+  int hint() {
+    return this.field().directionFrom(this.player);
+  }
+
+  // shows the route from where the player stands to the end as the solution,
+  // read from the distance field without searching
+  void showRoute() {
+    this.clearSearch();
+    int[] route = this.field().pathFrom(this.player);
+    for (int v : route) {
+      this.path.addLast(v);
+    }
+    this.finished = true;
+    if (this.log != null) {
+      this.log.path(route);
+    }
+  }
+
+  // resets the search path and solves the maze again, replaying it over the next
+  // ticks or showing it at once
+  void resetSearch() {
+    this.clearSearch();
+    this.metrics.time("solve", () -> this.result = this.solve());
+    this.metrics.set("solve.expanded", this.result.expanded.length);
+    this.metrics.add("solve." + this.addMethod.getClass().getSimpleName() + ".expanded",
+        this.result.expanded.length);
+    this.metrics.set("solve.path", this.result.path.length);
+    this.metrics.logSummary("solve");
+    this.searching = true;
+    if (!this.animate) {
+      while (this.searching) {
+        this.search();
+      }
+    }
+  }
+
+  // clears the search path
+  void clearSearch() {
+    this.searched = new IntDeque();
+    this.path = new IntDeque();
+    this.searching = false;
+    this.finished = false;
+    this.result = null;
+    if (this.log != null) {
+      this.log.clear();
+    }
+  }
+
+  // checks if player is at the end and produces end scene; javalib asks twice a tick
+  // and draws only the scene of a world that ended, so no scene is built until then
+  public WorldEnd worldEnds() {
+    if (this.player == this.grid.cells() - 1) {
+      WorldScene bg = this.drawScene();
+      WorldImage winCondition;
+      winCondition = new TextImage("You Won!", 20, Color.GREEN);
+      WorldImage textBox = new RectangleImage(100, 55, OutlineMode.SOLID, Color.white);
+      WorldImage display = new OverlayImage(winCondition, textBox);
+      bg.placeImageXY(display, bg.width / 2, bg.height / 2);
+      // the banner is not part of the maze, so the next frame starts a clean scene
+      this.scene = null;
+      return new WorldEnd(true, bg);
+    }
+    else {
+      return new WorldEnd(false, this.scene);
+    }
+  }
+
+  // draws the scene, or shows the last one again to catch up while the ticks run
+  // behind
+  public WorldScene makeScene() {
+    if (this.scene != null && this.budget.skipFrame()) {
+      this.metrics.add("makeScene.skipped", 1);
+      return this.scene;
+    }
+    return this.drawScene();
+  }
+
+  // draws the scene, timing how long the frame took to build for the budget
+  WorldScene drawScene() {
+    this.metrics.time("makeScene", () -> this.updateScene());
+    this.budget.drew(this.metrics.get("makeScene.ns"));
+    return this.scene;
+  }
+
+  // EFFECT: brings the scene up to date, reusing the last one and painting over it
+  // only the cells that changed since, unless the maze, the paths shown or the search
+  // were replaced
+  void updateScene() {
+    if (this.scene == null || this.drawnGrid != this.grid || this.drawnVisits != this.visits
+        || this.drawnSearched != this.searched || this.drawnPaths != this.showPaths
+        || this.drawnHeatmap != this.heatmap || this.drawnPath && !this.finished) {
+      this.drawWalls();
+    }
+    if (this.showPaths) {
+      // draws the cells the player left since the last frame, again on every visit
+      // when the heatmap shows how often
+      while (!this.stepped.isEmpty()) {
+        int cell = this.stepped.removeFirst();
+        if (this.shade[cell] < 1) {
+          this.shade[cell] = 1;
+          this.paintCell(cell);
+        }
+        else if (this.heatmap && this.shade[cell] == 1) {
+          this.paintCell(cell);
+        }
+      }
+
+      // draws the searching path
+      for (; this.searchedCount < this.searched.size(); this.searchedCount++) {
+        this.shadeCell(this.searched.get(this.searchedCount), 2);
+      }
+    }
+
+    else {
+      this.stepped.clear();
+    }
+
+    // draws the correct solution
+    if (this.finished && !this.drawnPath) {
+      for (int i = 0; i < this.path.size(); i++) {
+        this.shadeCell(this.path.get(i), 3);
+      }
+      this.drawnPath = true;
+    }
+    if (this.drawnPlayer != this.player) {
+      int left = this.drawnPlayer;
+      this.drawnPlayer = this.player;
+      this.paintCell(left);
+      this.paintCell(this.player);
+    }
+    if (this.renderer instanceof SceneRenderer && ((SceneRenderer) this.renderer).crowded(this)) {
+      this.scene = ((SceneRenderer) this.renderer).restart(this, true);
+    }
+  }
+
+  // EFFECT: starts a new scene holding only the walls, which never change for a maze,
+  // so that later frames paint just the cells that changed since the one before
+  void drawWalls() {
+    this.shade = new byte[this.grid.cells()];
+    this.drawnGrid = this.grid;
+    this.drawnVisits = this.visits;
+    this.drawnHeatmap = this.heatmap;
+    this.drawnSearched = this.searched;
+    this.searchedCount = 0;
+    this.drawnPath = false;
+    this.drawnPaths = this.showPaths;
+    this.drawnPlayer = this.player;
+    this.scene = this.renderer.start(this);
+    this.stepped.clear();
+    for (int cell = 0; this.showPaths && cell < this.visits.length; cell++) {
+      if (this.visits[cell] > 0) {
+        this.shadeCell(cell, 1);
+      }
+    }
+    this.paintCell(this.grid.cells() - 1);
+    this.paintCell(0);
+    this.paintCell(this.player);
+  }
+
+  // EFFECT: raises the cell to the given layer (1 travelled, 2 searched, 3 solution)
+  // and repaints it if that is now the top layer showing
+  void shadeCell(int cell, int layer) {
+    if (this.shade[cell] < layer) {
+      this.shade[cell] = (byte) layer;
+      this.paintCell(cell);
+    }
+  }
+
+  // EFFECT: paints the cell over the scene as it should look now
+  void paintCell(int cell) {
+    this.renderer.paint(this, cell, this.shadeOf(cell));
+  }
+
+  // produces the shade the cell shows: the end, the start and the player above the
+  // top layer painted on it
+  int shadeOf(int cell) {
+    int shade = this.shade[cell];
+    if (shade == 1 && this.heatmap) {
+      shade = MazeRenderer.HEAT + Math.min(MazeRenderer.HEAT_LEVELS - 1,
+          31 - Integer.numberOfLeadingZeros(this.visits[cell]));
+    }
+    if (cell == this.grid.cells() - 1) {
+      shade = 4;
+    }
+    if (cell == 0) {
+      shade = 5;
+    }
+    if (cell == this.player) {
+      shade = 6;
+    }
+    return shade;
+  }
+
+  // EFFECT: places the given image over the given cell of the scene
+  void placeCell(WorldScene bg, WorldImage image, int cell) {
+    bg.placeImageXY(image, this.grid.xOf(cell) * this.nodeSize + this.nodeSize / 2,
+        this.grid.yOf(cell) * this.nodeSize + this.nodeSize / 2);
+  }
+
+  // draws one wall of the maze
+  WorldImage drawWall(int xSize, int ySize) {
+    return new RectangleImage(xSize, ySize, OutlineMode.SOLID, Color.gray);
+  }
+}
+
+// represents how much of each tick a world spends stepping its search: as many steps
+// as fit in budgetNs at the running average cost of a step, less whatever the last
+// frame took beyond the rest of the tick, and always at least one; until the time
+// between ticks is known it takes one step a tick; while ticks arrive late, every
+// other frame is skipped so the steps can catch up
+class TickBudget {
+  static final int MAX_STEPS = 1 << 20;
+
+  long tickNs; // the time between ticks, 0 if unknown
+  long budgetNs; // the most a tick spends stepping, half the tick unless set
+  double stepNs = 1000;
+  long frameNs;
+  long lastTick;
+  boolean behind;
+  boolean skipped;
+
+  // EFFECT: starts pacing ticks that come every tickNs, stepping for half of each
+  // unless a budget was set
+  void start(long tickNs) {
+    this.tickNs = tickNs;
+    if (this.budgetNs == 0) {
+      this.budgetNs = tickNs / 2;
+    }
+  }
+
+  // EFFECT: records a tick starting at the given time, which is behind if it came
+  // half a tick or more late
+  void tick(long now) {
+    this.behind = this.tickNs > 0 && this.lastTick != 0
+        && now - this.lastTick >= this.tickNs + this.tickNs / 2;
+    this.lastTick = now;
+  }
+
+  // produces the number of steps to take this tick
+  int steps() {
+    if (this.tickNs == 0 || this.budgetNs == 0) {
+      return 1;
+    }
+    long over = Math.max(0, this.frameNs - (this.tickNs - this.budgetNs));
+    long available = Math.max(0, this.budgetNs - over);
+    return (int) Math.max(1, Math.min(MAX_STEPS, available / this.stepNs));
+  }
+
+  // EFFECT: folds the time the given steps took into the average cost of a step
+  void ran(int steps, long nanos) {
+    if (steps > 0) {
+      this.stepNs = Math.max(1, this.stepNs * 0.75 + (double) nanos / steps * 0.25);
+    }
+  }
+
+  // EFFECT: records how long the last frame took to draw
+  void drew(long nanos) {
+    this.frameNs = nanos;
+  }
+
+  // checks if this frame should be skipped: while behind, every other one is
+  // EFFECT: remembers whether it skipped this one
+  boolean skipFrame() {
+    this.skipped = this.behind && !this.skipped;
+    return this.skipped;
+  }
+}
+
+// represents a way of drawing the maze onto a scene: the walls once per maze, then
+// one cell at a time as cells change
+interface MazeRenderer {
+  // the colors of a cell by shade: blank, travelled, searched, solution, end, start, player,
+  // then the heatmap of travelled cells visited once, 2-3 times, 4-7 times, up to 128 or more
+  Color[] SHADES = {Color.white, new Color(255, 200, 221), new Color(189, 224, 254),
+      new Color(133, 196, 255), Color.MAGENTA, Color.blue, Color.RED,
+      new Color(255, 235, 200), new Color(255, 215, 150), new Color(255, 190, 110),
+      new Color(255, 160, 80), new Color(250, 125, 55), new Color(235, 90, 40),
+      new Color(210, 55, 30), new Color(170, 25, 25)};
+  // the first heatmap shade and the number of them
+  int HEAT = 7;
+  int HEAT_LEVELS = 8;
+
+  // EFFECT: produces a new scene showing the walls of the world's maze
+  WorldScene start(MazeWorld world);
+
+  // EFFECT: paints the cell in the given shade over the last scene started, keeping
+  // the walls around it on top
+  void paint(MazeWorld world, int cell, int shade);
+}
+
+// represents drawing the maze as one RectangleImage per cell and per blocked wall;
+// javalib keeps every image placed on a scene and draws them all each frame, so once
+// painting has placed more than limit images a cell the scene is started over with
+// one image per shaded cell and the walls on top
+class SceneRenderer implements MazeRenderer {
+  int limit = 4;
+  WorldScene scene;
+  WorldImage[] cellImages;
+  WorldImage rightWall;
+  WorldImage downWall;
+  // the images placed on the scene since it was started
+  long placed;
+
+  // EFFECT: produces a new scene with an image placed for every blocked wall
+  public WorldScene start(MazeWorld world) {
+    this.cellImages = new WorldImage[SHADES.length];
+    for (int i = 0; i < SHADES.length; i++) {
+      this.cellImages[i] = new RectangleImage(world.nodeSize, world.nodeSize, OutlineMode.SOLID,
+          SHADES[i]);
+    }
+    this.rightWall = world.drawWall(1, world.nodeSize);
+    this.downWall = world.drawWall(world.nodeSize, 1);
+    return this.restart(world, false);
+  }
+
+  // EFFECT: produces a new scene with the cells the world shows painted, if asked,
+  // then an image for every blocked wall on top
+  WorldScene restart(MazeWorld world, boolean cells) {
+    this.scene = new WorldScene(world.width * world.nodeSize, world.height * world.nodeSize);
+    this.placed = 0;
+    for (int cur = 0; cells && cur < world.grid.cells(); cur++) {
+      int shade = world.shadeOf(cur);
+      if (shade > 0) {
+        this.placeCell(world, cur, shade);
+      }
+    }
+    for (int cur = 0; cur < world.grid.cells(); cur++) {
+      this.placeWalls(world, cur);
+    }
+    return this.scene;
+  }
+
+  // is the scene holding more images than the limit a cell?
+  boolean crowded(MazeWorld world) {
+    return this.placed > (long) this.limit * world.grid.cells();
+  }
+
+  // EFFECT: places the cell's image over the scene, then its walls and those of the
+  // cells to its left and above, which the image overlaps
+  public void paint(MazeWorld world, int cell, int shade) {
+    this.placeCell(world, cell, shade);
+    this.placeWalls(world, cell);
+    if (world.grid.xOf(cell) > 0) {
+      this.placeWalls(world, cell - 1);
+    }
+    if (world.grid.yOf(cell) > 0) {
+      this.placeWalls(world, cell - world.grid.width);
+    }
+  }
+
+  // EFFECT: places the image of the cell in the given shade on the scene
+  void placeCell(MazeWorld world, int cell, int shade) {
+    world.placeCell(this.scene, this.cellImages[shade], cell);
+    this.placed++;
+  }
+
+  // EFFECT: places the blocked right and down walls of the cell on the scene
+  void placeWalls(MazeWorld world, int cur) {
+    int x = world.grid.xOf(cur);
+    int y = world.grid.yOf(cur);
+    int size = world.nodeSize;
+    if (world.grid.rightBlocked(cur)) {
+      this.scene.placeImageXY(this.rightWall, (x + 1) * size, (y + 1) * size - size / 2);
+      this.placed++;
+    }
+    if (world.grid.downBlocked(cur)) {
+      this.scene.placeImageXY(this.downWall, (x + 1) * size - size / 2, (y + 1) * size);
+      this.placed++;
+    }
+  }
+}
+
+// represents drawing the maze into a single pixel image placed once on the scene,
+// with each straight line of blocked walls filled as one run; a cell's right wall
+// is its last column of pixels and its down wall its last row
+class RasterRenderer implements MazeRenderer {
+  ComputedPixelImage image;
+  int runs;
+
+  // EFFECT: produces a new scene holding one image with every wall filled in
+  public WorldScene start(MazeWorld world) {
+    MazeGrid grid = world.grid;
+    int size = world.nodeSize;
+    WorldScene scene = new WorldScene(world.width * size, world.height * size);
+    this.image = new ComputedPixelImage(world.width * size, world.height * size);
+    this.runs = 0;
+    // the row where the run of right walls going down each column started, or -1
+    int[] column = new int[grid.width];
+    Arrays.fill(column, -1);
+    for (int y = 0; y < grid.height; y++) {
+      int row = -1;
+      for (int x = 0; x < grid.width; x++) {
+        int cur = grid.index(x, y);
+        if (grid.rightBlocked(cur) && column[x] < 0) {
+          column[x] = y;
+        }
+        else if (!grid.rightBlocked(cur) && column[x] >= 0) {
+          this.fillRun((x + 1) * size - 1, column[x] * size, 1, (y - column[x]) * size);
+          column[x] = -1;
+        }
+        if (grid.downBlocked(cur) && row < 0) {
+          row = x;
+        }
+        else if (!grid.downBlocked(cur) && row >= 0) {
+          this.fillRun(row * size, (y + 1) * size - 1, (x - row) * size, 1);
+          row = -1;
+        }
+      }
+      if (row >= 0) {
+        this.fillRun(row * size, (y + 1) * size - 1, (grid.width - row) * size, 1);
+      }
+    }
+    for (int x = 0; x < grid.width; x++) {
+      if (column[x] >= 0) {
+        this.fillRun((x + 1) * size - 1, column[x] * size, 1, (grid.height - column[x]) * size);
+      }
+    }
+    scene.placeImageXY(this.image, world.width * size / 2, world.height * size / 2);
+    return scene;
+  }
+
+  // EFFECT: fills a run of wall pixels in the image
+  void fillRun(int x, int y, int width, int height) {
+    this.image.setPixels(x, y, width, height, Color.gray);
+    this.runs++;
+  }
+
+  // EFFECT: fills the cell's pixels in the image, then its own walls back in
+  public void paint(MazeWorld world, int cell, int shade) {
+    int size = world.nodeSize;
+    int x = world.grid.xOf(cell) * size;
+    int y = world.grid.yOf(cell) * size;
+    this.image.setPixels(x, y, size, size, SHADES[shade]);
+    if (world.grid.rightBlocked(cell)) {
+      this.image.setPixels(x + size - 1, y, 1, size, Color.gray);
+    }
+    if (world.grid.downBlocked(cell)) {
+      this.image.setPixels(x, y + size - 1, size, 1, Color.gray);
+    }
+  }
+}
+
+// represents drawing only the part of the maze inside a fixed window that follows
+// the player, so a frame costs the same however big the maze is; zoomed out past
+// the point where walls fit, cells collapse into plain pixels showing the paths,
+// each pixel showing the highest shade painted in its block since the last redraw
+class ViewportRenderer implements MazeRenderer {
+  // zoom levels from nearest to farthest: positive levels are pixels per cell and
+  // negative ones cells per pixel
+  static final int[] ZOOMS = {16, 8, 4, 2, 1, -2, -4, -8, -16};
+  int pixelWidth;
+  int pixelHeight;
+  int level;
+  int left;
+  int top;
+  ComputedPixelImage image;
+  byte[] pixelShades;
+  int[] owners;
+  int redraws;
+
+  ViewportRenderer(int pixelWidth, int pixelHeight, int level) {
+    if (level < 0 || level >= ZOOMS.length) {
+      throw new IllegalArgumentException("Invalid zoom level");
+    }
+    this.pixelWidth = pixelWidth;
+    this.pixelHeight = pixelHeight;
+    this.level = level;
+  }
+
+  // EFFECT: moves the given number of zoom levels out, or in when negative,
+  // stopping at the nearest and farthest levels
+  void zoomBy(int steps) {
+    this.level = Math.max(0, Math.min(ZOOMS.length - 1, this.level + steps));
+  }
+
+  // produces the number of whole cells shown across the given number of pixels
+  int cellsAcross(int pixels) {
+    int zoom = ZOOMS[this.level];
+    return zoom > 0 ? pixels / zoom : pixels * -zoom;
+  }
+
+  // EFFECT: produces a new scene holding the window around the player
+  public WorldScene start(MazeWorld world) {
+    WorldScene scene = new WorldScene(this.pixelWidth, this.pixelHeight);
+    this.image = new ComputedPixelImage(this.pixelWidth, this.pixelHeight);
+    this.pixelShades = new byte[this.pixelWidth * this.pixelHeight];
+    this.owners = new int[this.pixelWidth * this.pixelHeight];
+    this.left = -1;
+    this.follow(world);
+    this.redraw(world);
+    scene.placeImageXY(this.image, this.pixelWidth / 2, this.pixelHeight / 2);
+    return scene;
+  }
+
+  // EFFECT: paints the cell if it is in the window, or moves the window and paints
+  // it all again when the player gets near its edge
+  public void paint(MazeWorld world, int cell, int shade) {
+    if (cell == world.player && this.follow(world)) {
+      this.redraw(world);
+    }
+    else {
+      this.fillCell(world, cell, shade);
+    }
+  }
+
+  // EFFECT: centers the window on the player if they are within a quarter of the
+  // window of its edge, keeping it inside the maze, and produces whether it moved
+  boolean follow(MazeWorld world) {
+    int across = this.cellsAcross(this.pixelWidth);
+    int down = this.cellsAcross(this.pixelHeight);
+    int x = world.grid.xOf(world.player);
+    int y = world.grid.yOf(world.player);
+    int newLeft = this.left;
+    int newTop = this.top;
+    if (this.left < 0 || x < this.left + across / 4 || x >= this.left + across - across / 4) {
+      newLeft = Math.max(0, Math.min(world.grid.width - across, x - across / 2));
+    }
+    if (this.left < 0 || y < this.top + down / 4 || y >= this.top + down - down / 4) {
+      newTop = Math.max(0, Math.min(world.grid.height - down, y - down / 2));
+    }
+    boolean moved = newLeft != this.left || newTop != this.top;
+    this.left = newLeft;
+    this.top = newTop;
+    return moved;
+  }
+
+  // EFFECT: paints every cell in the window again, then the end, the start and the
+  // player over them; zoomed out, each pixel takes the cell with the highest shade in
+  // its block, as paint would leave it, so no cell drops out of the picture however
+  // the window moved
+  void redraw(MazeWorld world) {
+    int zoom = ZOOMS[this.level];
+    int right = Math.min(world.grid.width, this.left + this.cellsAcross(this.pixelWidth));
+    int bottom = Math.min(world.grid.height, this.top + this.cellsAcross(this.pixelHeight));
+    this.image.setPixels(0, 0, this.pixelWidth, this.pixelHeight, Color.white);
+    Arrays.fill(this.pixelShades, (byte) 0);
+    Arrays.fill(this.owners, -1);
+    if (zoom > 0) {
+      for (int y = this.top; y < bottom; y++) {
+        for (int x = this.left; x < right; x++) {
+          int cell = world.grid.index(x, y);
+          this.fillCell(world, cell, world.shadeOf(cell));
+        }
+      }
+    }
+    else {
+      // folds the blocks first, then sets each pixel that is not blank once
+      for (int y = this.top; y < bottom; y++) {
+        int row = (y - this.top) / -zoom * this.pixelWidth;
+        for (int x = this.left; x < right; x++) {
+          int cell = world.grid.index(x, y);
+          int shade = world.shadeOf(cell);
+          int pixel = row + (x - this.left) / -zoom;
+          if (shade > this.pixelShades[pixel] || this.owners[pixel] < 0) {
+            this.pixelShades[pixel] = (byte) shade;
+            this.owners[pixel] = cell;
+          }
+        }
+      }
+      for (int pixel = 0; pixel < this.pixelShades.length; pixel++) {
+        if (this.pixelShades[pixel] > 0) {
+          this.image.setPixel(pixel % this.pixelWidth, pixel / this.pixelWidth,
+              SHADES[this.pixelShades[pixel]]);
+        }
+      }
+    }
+    this.fillCell(world, world.grid.cells() - 1, world.shadeOf(world.grid.cells() - 1));
+    this.fillCell(world, 0, world.shadeOf(0));
+    this.fillCell(world, world.player, world.shadeOf(world.player));
+    this.redraws++;
+  }
+
+  // EFFECT: fills the cell's pixels in the image if it is in the window, with its
+  // walls when cells are at least 4 pixels wide; zoomed out, a pixel takes the cell
+  // unless it shows a higher shade of another cell in its block
+  void fillCell(MazeWorld world, int cell, int shade) {
+    int zoom = ZOOMS[this.level];
+    int x = world.grid.xOf(cell) - this.left;
+    int y = world.grid.yOf(cell) - this.top;
+    boolean shown = x >= 0 && y >= 0 && x < this.cellsAcross(this.pixelWidth)
+        && y < this.cellsAcross(this.pixelHeight);
+    int pixel = shown && zoom < 0 ? y / -zoom * this.pixelWidth + x / -zoom : -1;
+    if (pixel >= 0 && (shade >= this.pixelShades[pixel] || this.owners[pixel] == cell)) {
+      this.pixelShades[pixel] = (byte) shade;
+      this.owners[pixel] = cell;
+      this.image.setPixel(x / -zoom, y / -zoom, SHADES[shade]);
+    }
+    if (shown && zoom > 0) {
+      this.image.setPixels(x * zoom, y * zoom, zoom, zoom, SHADES[shade]);
+      if (zoom >= 4 && world.grid.rightBlocked(cell)) {
+        this.image.setPixels(x * zoom + zoom - 1, y * zoom, 1, zoom, Color.gray);
+      }
+      if (zoom >= 4 && world.grid.downBlocked(cell)) {
+        this.image.setPixels(x * zoom, y * zoom + zoom - 1, zoom, 1, Color.gray);
+      }
+    }
+  }
+}
+
+// represents disjoint sets of cells, indexed by y * width + x, backed by
+// flat parent and rank arrays with path compression and union by rank
+class UnionFind {
+  int[] parent;
+  int[] rank;
+  long steps; // parent links followed by find, used to check the cost stays flat
+  long finds;
+  long unions;
+  int maxPath; // most parent links followed by a single find
+
+  UnionFind(int size) {
+    this.parent = new int[size];
+    this.rank = new int[size];
+    this.reset();
+  }
+
+  // EFFECT: puts every cell back in a set of its own and clears the counts
+  void reset() {
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = i;
+    }
+    Arrays.fill(this.rank, 0);
+    this.steps = 0;
+    this.finds = 0;
+    this.unions = 0;
+    this.maxPath = 0;
+  }
+
+  // finds the representative of the given cell
+  // EFFECT: points every cell on the way directly at the representative
+  int find(int cell) {
+    int root = cell;
+    int length = 0;
+    while (this.parent[root] != root) {
+      root = this.parent[root];
+      length++;
+    }
+    this.steps += length;
+    this.finds++;
+    this.maxPath = Math.max(this.maxPath, length);
+    while (this.parent[cell] != root) {
+      int next = this.parent[cell];
+      this.parent[cell] = root;
+      cell = next;
+    }
+    return root;
+  }
+
+  // EFFECT: joins the sets of the two cells, hanging the shallower tree under the deeper one
+  // produces false if the cells were already in the same set
+  boolean union(int a, int b) {
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra == rb) {
+      return false;
+    }
+    if (this.rank[ra] < this.rank[rb]) {
+      this.parent[ra] = rb;
+    }
+    else if (this.rank[ra] > this.rank[rb]) {
+      this.parent[rb] = ra;
+    }
+    else {
+      this.parent[rb] = ra;
+      this.rank[ra]++;
+    }
+    this.unions++;
+    return true;
+  }
+}
+
+// represents a way of knocking down the walls of a grid along the minimum spanning
+// tree of its edge weights, where weights are indexed by packed edge id and -1 means
+// there is no edge; ties are broken by edge id, so every way makes the same tree
+interface SpanningTree {
+  // EFFECT: opens the walls of the grid on the minimum spanning tree of the weights,
+  // every weight being below bound
+  void span(MazeGrid grid, int[] weights, int bound);
+
+  // EFFECT: records what the last span did under krusAlg in the metrics
+  void report(MazeMetrics metrics);
+}
+
+// represents Kruskal's algorithm, run on one thread over edges in weight order; the
+// order and sets of the last span are reused by the next one on a grid of the same size
+class KruskalTree implements SpanningTree {
+  int[] order;
+  UnionFind sets;
+
+  // EFFECT: opens the walls of the grid on the minimum spanning tree of the weights
+  public void span(MazeGrid grid, int[] weights, int bound) {
+    this.order = this.sortEdges(weights, bound, this.order);
+    if (this.sets == null || this.sets.parent.length != grid.cells()) {
+      this.sets = new UnionFind(grid.cells());
+    }
+    else {
+      this.sets.reset();
+    }
+    for (int next = 0; grid.opened < grid.cells() - 1 && next < this.order.length; next++) {
+      int id = this.order[next];
+      int cell = id / 2;
+      int other = id % 2 == 0 ? cell + 1 : cell + grid.width;
+      if (this.sets.union(cell, other)) {
+        grid.open(id);
+      }
+    }
+  }
+
+  // EFFECT: records the union-find work of the last span
+  public void report(MazeMetrics metrics) {
+    metrics.set("krusAlg.finds", this.sets.finds);
+    metrics.set("krusAlg.unions", this.sets.unions);
+    metrics.set("krusAlg.findSteps", this.sets.steps);
+    metrics.set("krusAlg.maxFindPath", this.sets.maxPath);
+  }
+
+  // counting sort of the edge ids by weight, where every weight is below bound;
+  // edges of equal weight keep their id order, so the tree matches a stable sort
+  int[] sortEdges(int[] weights, int bound) {
+    return this.sortEdges(weights, bound, null);
+  }
+
+  // sorts the edge ids as above into the given array when it has room for exactly
+  // the edges present, and into a new one otherwise
+  int[] sortEdges(int[] weights, int bound, int[] into) {
+    int[] starts = new int[bound + 1];
+    int present = 0;
+    for (int w : weights) {
+      if (w >= 0) {
+        starts[w + 1]++;
+        present++;
+      }
+    }
+    for (int w = 1; w <= bound; w++) {
+      starts[w] += starts[w - 1];
+    }
+    int[] sorted = into != null && into.length == present ? into : new int[present];
+    for (int id = 0; id < weights.length; id++) {
+      if (weights[id] >= 0) {
+        sorted[starts[weights[id]]++] = id;
+      }
+    }
+    return sorted;
+  }
+}
+
+// represents Boruvka's algorithm run on a fork/join pool: every round each component
+// picks its cheapest outgoing edge in parallel, then the components hook onto each
+// other along those edges and are relabelled by pointer jumping
+class BoruvkaTree implements SpanningTree {
+  ForkJoinPool pool;
+  int rounds;
+
+  BoruvkaTree() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  BoruvkaTree(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  // EFFECT: records the number of rounds the last span took
+  public void report(MazeMetrics metrics) {
+    metrics.set("krusAlg.rounds", this.rounds);
+  }
+
+  // EFFECT: opens the walls of the grid on the minimum spanning tree of the weights
+  public void span(MazeGrid grid, int[] weights, int bound) {
+    int cells = grid.cells();
+    int width = grid.width;
+    int[] comp = new int[cells];
+    int[] hook = new int[cells];
+    int[] chosen = new int[cells];
+    AtomicLongArray best = new AtomicLongArray(cells);
+    this.inParallel(cells, i -> comp[i] = i);
+    int[] live = this.pool.submit(() -> IntStream.range(0, weights.length).parallel()
+        .filter(id -> weights[id] >= 0).toArray()).join();
+    int[] roots = this.pool.submit(() -> IntStream.range(0, cells).toArray()).join();
+    this.rounds = 0;
+    while (roots.length > 1 && live.length > 0) {
+      this.rounds++;
+      int[] rootsNow = roots;
+      int[] liveNow = live;
+      this.inParallel(rootsNow.length, i -> best.set(rootsNow[i], Long.MAX_VALUE));
+
+      // drops the edges inside a component, then each edge left offers itself to the
+      // components on both sides, keyed by (weight, id)
+      live = this.pool.submit(() -> IntStream.of(liveNow).parallel()
+          .filter(id -> comp[id / 2] != comp[id % 2 == 0 ? id / 2 + 1 : id / 2 + width])
+          .toArray()).join();
+      this.pool.invoke(new CheapestEdges(live, 0, live.length, comp, weights, width, best));
+
+      // each component hooks onto the one across its cheapest edge; when two
+      // components pick the same edge the lower one stays a root
+      this.inParallel(rootsNow.length, i -> {
+        int r = rootsNow[i];
+        long key = best.get(r);
+        hook[r] = r;
+        chosen[r] = -1;
+        if (key != Long.MAX_VALUE) {
+          int id = (int) key;
+          int a = comp[id / 2];
+          int other = a == r ? comp[id % 2 == 0 ? id / 2 + 1 : id / 2 + width] : a;
+          if (best.get(other) != key || other < r) {
+            hook[r] = other;
+            chosen[r] = id;
+          }
+        }
+      });
+      for (int r : rootsNow) {
+        if (chosen[r] >= 0) {
+          grid.open(chosen[r]);
+        }
+      }
+
+      // jumps every hook to the root of its new component
+      boolean moved = true;
+      while (moved) {
+        moved = false;
+        int[] jumped = this.pool.submit(() -> IntStream.of(rootsNow).parallel()
+            .filter(r -> hook[hook[r]] != hook[r]).toArray()).join();
+        if (jumped.length > 0) {
+          moved = true;
+          this.inParallel(jumped.length, i -> hook[jumped[i]] = hook[hook[jumped[i]]]);
+        }
+      }
+      this.inParallel(cells, i -> comp[i] = hook[comp[i]]);
+      roots = this.pool.submit(() -> IntStream.of(rootsNow).parallel()
+          .filter(r -> hook[r] == r).toArray()).join();
+    }
+  }
+
+  // EFFECT: runs the body for every index below n on this generator's pool
+  void inParallel(int n, IntConsumer body) {
+    this.pool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).join();
+  }
+}
+
+// represents finding the cheapest edge out of each component over a range of the
+// edges between components, split in halves across the pool down to LEAF edges;
+// every edge lowers the best key of both its components with compare-and-set, so
+// the order the halves run in does not change the result
+class CheapestEdges extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+  static final int LEAF = 1 << 13;
+  int[] edges;
+  int from;
+  int to;
+  int[] comp;
+  int[] weights;
+  int width;
+  AtomicLongArray best;
+
+  CheapestEdges(int[] edges, int from, int to, int[] comp, int[] weights, int width,
+      AtomicLongArray best) {
+    this.edges = edges;
+    this.from = from;
+    this.to = to;
+    this.comp = comp;
+    this.weights = weights;
+    this.width = width;
+    this.best = best;
+  }
+
+  // EFFECT: lowers the best key of the components on both sides of every edge in
+  // the range to that edge's (weight, id) key where it is smaller
+  protected void compute() {
+    if (this.to - this.from <= LEAF) {
+      for (int i = this.from; i < this.to; i++) {
+        int id = this.edges[i];
+        long key = ((long) this.weights[id] << 32) | id;
+        this.lower(this.comp[id / 2], key);
+        this.lower(this.comp[id % 2 == 0 ? id / 2 + 1 : id / 2 + this.width], key);
+      }
+    }
+    else {
+      int mid = (this.from + this.to) >>> 1;
+      invokeAll(new CheapestEdges(this.edges, this.from, mid, this.comp, this.weights,
+          this.width, this.best), new CheapestEdges(this.edges, mid, this.to, this.comp,
+          this.weights, this.width, this.best));
+    }
+  }
+
+  // EFFECT: lowers the given slot to the key if the key is smaller
+  void lower(int slot, long key) {
+    long cur = this.best.get(slot);
+    while (key < cur && !this.best.compareAndSet(slot, cur, key)) {
+      cur = this.best.get(slot);
+    }
+  }
+}
+
+// represents the outcome of a search: the cells in the order they were expanded,
+// and the path from the start to the goal (empty if the goal was not reached)
+class SearchResult {
+  int[] expanded;
+  int[] path;
+
+  SearchResult(int[] expanded, int[] path) {
+    this.expanded = expanded;
+    this.path = path;
+  }
+}
+
+// represents a search run to completion over primitive arrays, reusing its buffers
+// from one solve to the next
+class Solver {
+  int[] parent = new int[0];
+  long[] visited = new long[0];
+  long[] fromGoal = new long[0];
+  int[] expanded = new int[0];
+
+  // runs the search from start until goal is expanded, taking cells from the
+  // frontier in the order the strategy keeps them; a strategy that searches from
+  // both ends stops as soon as the two searches touch
+  SearchResult solve(MazeGrid grid, SearchAdd strategy, int start, int goal) {
+    int cells = grid.cells();
+    if (this.parent.length < cells) {
+      this.parent = new int[cells];
+      this.visited = new long[(cells + 63) / 64];
+      this.fromGoal = new long[(cells + 63) / 64];
+      this.expanded = new int[cells];
+    }
+    else {
+      Arrays.fill(this.visited, 0L);
+      Arrays.fill(this.fromGoal, 0L);
+    }
+    boolean both = strategy.fromBothEnds() && start != goal;
+    int count = 0;
+    strategy.reset(grid, goal);
+    strategy.add(start, -1);
+    this.mark(this.visited, start);
+    this.parent[start] = -1;
+    if (both) {
+      strategy.add(goal, -1);
+      this.mark(this.visited, goal);
+      this.mark(this.fromGoal, goal);
+      this.parent[goal] = -1;
+    }
+    while (!strategy.isEmpty()) {
+      int current = strategy.next();
+      if (!both && current == goal) {
+        return new SearchResult(Arrays.copyOf(this.expanded, count), this.backPath(goal));
+      }
+      this.expanded[count++] = current;
+      boolean side = this.isMarked(this.fromGoal, current);
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        int next = grid.neighbor(current, dir);
+        if (next >= 0 && !this.isMarked(this.visited, next)) {
+          this.mark(this.visited, next);
+          if (side) {
+            this.mark(this.fromGoal, next);
+          }
+          this.parent[next] = current;
+          strategy.add(next, current);
+        }
+        else if (next >= 0 && both && this.isMarked(this.fromGoal, next) != side) {
+          return new SearchResult(Arrays.copyOf(this.expanded, count),
+              side ? this.joinPath(next, current) : this.joinPath(current, next));
+        }
+      }
+    }
+    return new SearchResult(Arrays.copyOf(this.expanded, count), new int[0]);
+  }
+
+  // goes back to start with shortest path, following the parents of the last solve
+  int[] backPath(int current) {
+    int length = 1;
+    for (int v = current; this.parent[v] >= 0; v = this.parent[v]) {
+      length++;
+    }
+    int[] path = new int[length];
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = current;
+      current = this.parent[current] >= 0 ? this.parent[current] : current;
+    }
+    return path;
+  }
+
+  // joins the path from the start to a cell reached from the start with the path
+  // from its neighbor, reached from the goal, on to the goal
+  int[] joinPath(int startSide, int goalSide) {
+    int[] first = this.backPath(startSide);
+    int length = first.length;
+    for (int v = goalSide; v >= 0; v = this.parent[v]) {
+      length++;
+    }
+    int[] path = Arrays.copyOf(first, length);
+    int i = first.length;
+    for (int v = goalSide; v >= 0; v = this.parent[v]) {
+      path[i++] = v;
+    }
+    return path;
+  }
+
+  // EFFECT: sets the bit of the given cell
+  void mark(long[] bits, int cell) {
+    bits[cell >>> 6] |= 1L << cell;
+  }
+
+  // checks if the bit of the given cell is set
+  boolean isMarked(long[] bits, int cell) {
+    return (bits[cell >>> 6] & (1L << cell)) != 0;
+  }
+}
+
+// represents every cell's distance to a goal and its next step toward it, found
+// by one breadth first search out from the goal; since the maze is a spanning tree,
+// following next steps from any cell walks its only path to the goal
+class DistanceField {
+  MazeGrid grid;
+  int goal;
+  int[] distance;
+  int[] next; // the neighbor one step closer to the goal, -1 at the goal
+
+  DistanceField(MazeGrid grid, int goal) {
+    this.grid = grid;
+    this.goal = goal;
+    this.distance = new int[grid.cells()];
+    this.next = new int[grid.cells()];
+    Arrays.fill(this.distance, -1);
+    IntDeque work = new IntDeque();
+    this.distance[goal] = 0;
+    this.next[goal] = -1;
+    work.addLast(goal);
+    while (!work.isEmpty()) {
+      int current = work.removeFirst();
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        int cell = grid.neighbor(current, dir);
+        if (cell >= 0 && this.distance[cell] < 0) {
+          this.distance[cell] = this.distance[current] + 1;
+          this.next[cell] = current;
+          work.addLast(cell);
+        }
+      }
+    }
+  }
+
+  // produces the cells from the given cell to the goal, or none if it is cut off
+  int[] pathFrom(int cell) {
+    if (this.distance[cell] < 0) {
+      return new int[0];
+    }
+    int[] path = new int[this.distance[cell] + 1];
+    for (int i = 0; i < path.length; i++) {
+      path[i] = cell;
+      cell = this.next[cell];
+    }
+    return path;
+  }
+
+  // produces the direction of the first step from the given cell toward the goal,
+  // or -1 at the goal or from a cell cut off from it
+  int directionFrom(int cell) {
+    int step = this.distance[cell] > 0 ? this.next[cell] : -1;
+    if (step < 0) {
+      return -1;
+    }
+    else if (step == cell - 1) {
+      return MazeGrid.LEFT;
+    }
+    else if (step == cell + 1) {
+      return MazeGrid.RIGHT;
+    }
+    else {
+      return step < cell ? MazeGrid.UP : MazeGrid.DOWN;
+    }
+  }
+}
+
+// represents the maze's spanning tree hung from cell 0 for queries between any two
+// cells: an Euler tour of the tree keeps (depth, cell) of every cell passed, and the
+// lowest common ancestor of two cells is the shallowest entry between their first
+// visits, found by scanning the ends of two blocks of the tour and looking up the
+// blocks between in a sparse table of block minimums, so a query takes a few
+// sequential reads and the table stays small next to the tour
+class TreeIndex {
+  static final int BLOCK = 32;
+
+  MazeGrid grid;
+  int[] parent;
+  int[] depth;
+  int[] first;
+  long[] tour; // depth << 32 | cell of each step of the tour
+  long[][] table; // table[k][i] is the smallest entry in blocks i to i + 2^k - 1
+
+  TreeIndex(MazeGrid grid) {
+    int cells = grid.cells();
+    this.grid = grid;
+    this.parent = new int[cells];
+    this.depth = new int[cells];
+    this.first = new int[cells];
+    this.tour = new long[cells * 2 - 1];
+    this.walk();
+    int blocks = (this.tour.length + BLOCK - 1) / BLOCK;
+    int levels = 32 - Integer.numberOfLeadingZeros(blocks);
+    this.table = new long[levels][];
+    this.table[0] = new long[blocks];
+    for (int i = 0; i < blocks; i++) {
+      this.table[0][i] = this.scan(i * BLOCK, Math.min(this.tour.length, (i + 1) * BLOCK) - 1);
+    }
+    for (int k = 1; k < levels; k++) {
+      long[] below = this.table[k - 1];
+      long[] level = new long[blocks - (1 << k) + 1];
+      for (int i = 0; i < level.length; i++) {
+        level[i] = Math.min(below[i], below[i + (1 << (k - 1))]);
+      }
+      this.table[k] = level;
+    }
+  }
+
+  // EFFECT: walks the tree depth first from cell 0 with an explicit stack, recording
+  // each cell's parent and depth and every step of the tour
+  void walk() {
+    int[] stack = new int[this.parent.length];
+    byte[] dirs = new byte[this.parent.length];
+    int top = 0;
+    int steps = 0;
+    stack[0] = 0;
+    this.parent[0] = -1;
+    this.first[0] = 0;
+    this.tour[steps++] = 0;
+    while (top >= 0) {
+      int cell = stack[top];
+      int next = -1;
+      while (next < 0 && dirs[cell] <= MazeGrid.DOWN) {
+        next = this.grid.neighbor(cell, dirs[cell]++);
+        if (next == this.parent[cell]) {
+          next = -1;
+        }
+      }
+      if (next >= 0) {
+        this.parent[next] = cell;
+        this.depth[next] = this.depth[cell] + 1;
+        this.first[next] = steps;
+        this.tour[steps++] = ((long) this.depth[next] << 32) | next;
+        stack[++top] = next;
+      }
+      else if (--top >= 0) {
+        this.tour[steps++] = ((long) this.depth[stack[top]] << 32) | stack[top];
+      }
+    }
+  }
+
+  // produces the smallest entry of the tour from i to j, both included
+  long scan(int i, int j) {
+    long min = Long.MAX_VALUE;
+    for (; i <= j; i++) {
+      min = Math.min(min, this.tour[i]);
+    }
+    return min;
+  }
+
+  // produces the lowest cell that is an ancestor of both cells
+  int lca(int a, int b) {
+    int i = Math.min(this.first[a], this.first[b]);
+    int j = Math.max(this.first[a], this.first[b]);
+    int bi = i / BLOCK;
+    int bj = j / BLOCK;
+    if (bi == bj) {
+      return (int) this.scan(i, j);
+    }
+    long min = Math.min(this.scan(i, bi * BLOCK + BLOCK - 1), this.scan(bj * BLOCK, j));
+    if (bi + 1 < bj) {
+      int k = 31 - Integer.numberOfLeadingZeros(bj - bi - 1);
+      min = Math.min(min, Math.min(this.table[k][bi + 1], this.table[k][bj - (1 << k)]));
+    }
+    return (int) min;
+  }
+
+  // produces the number of steps on the path between the two cells
+  int distance(int a, int b) {
+    return this.depth[a] + this.depth[b] - 2 * this.depth[this.lca(a, b)];
+  }
+
+  // produces the cells on the path from a to b, both included
+  int[] path(int a, int b) {
+    int top = this.lca(a, b);
+    int up = this.depth[a] - this.depth[top];
+    int[] path = new int[up + this.depth[b] - this.depth[top] + 1];
+    for (int i = 0; i <= up; i++) {
+      path[i] = a;
+      a = this.parent[a];
+    }
+    for (int i = path.length - 1; i > up; i--) {
+      path[i] = b;
+      b = this.parent[b];
+    }
+    return path;
+  }
+
+  // EFFECT: writes the distance between from[i] and to[i] into out[i] for every pair
+  void distances(int[] from, int[] to, int[] out) {
+    if (from.length != to.length || out.length < from.length) {
+      throw new IllegalArgumentException("Mismatched pairs");
+    }
+    for (int i = 0; i < from.length; i++) {
+      out[i] = this.distance(from[i], to[i]);
+    }
+  }
+}
+
+// represents a double-ended queue of ints kept in a ring buffer that doubles when full
+class IntDeque {
+  int[] items;
+  int head;
+  int size;
+
+  IntDeque() {
+    this(16);
+  }
+
+  // makes an empty deque with room for at least the given number of items
+  IntDeque(int capacity) {
+    int length = 1;
+    while (length < capacity) {
+      length *= 2;
+    }
+    this.items = new int[length];
+    this.head = 0;
+    this.size = 0;
+  }
+
+  // produces the number of items in this deque
+  int size() {
+    return this.size;
+  }
+
+  // checks if this deque has no items
+  boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  // produces the item at the given position counted from the front
+  int get(int i) {
+    if (i < 0 || i >= this.size) {
+      throw new IndexOutOfBoundsException("No item at " + i);
+    }
+    return this.items[(this.head + i) & (this.items.length - 1)];
+  }
+
+  // EFFECT: adds the item to the front of this deque
+  void addFirst(int item) {
+    if (this.size == this.items.length) {
+      this.grow();
+    }
+    this.head = (this.head - 1) & (this.items.length - 1);
+    this.items[this.head] = item;
+    this.size++;
+  }
+
+  // EFFECT: adds the item to the back of this deque
+  void addLast(int item) {
+    if (this.size == this.items.length) {
+      this.grow();
+    }
+    this.items[(this.head + this.size) & (this.items.length - 1)] = item;
+    this.size++;
+  }
+
+  // EFFECT: removes and produces the item at the front of this deque
+  int removeFirst() {
+    if (this.size == 0) {
+      throw new IllegalStateException("Deque is empty");
+    }
+    int item = this.items[this.head];
+    this.head = (this.head + 1) & (this.items.length - 1);
+    this.size--;
+    return item;
+  }
+
+  // EFFECT: removes and produces the item at the back of this deque
+  int removeLast() {
+    if (this.size == 0) {
+      throw new IllegalStateException("Deque is empty");
+    }
+    this.size--;
+    return this.items[(this.head + this.size) & (this.items.length - 1)];
+  }
+
+  // EFFECT: removes every item, keeping the buffer
+  void clear() {
+    this.head = 0;
+    this.size = 0;
   }
 
-  // increments the world per tick
-  public void onTick() {
-    if (this.searching) {
-      this.search();
-    } 
+  // produces the items from front to back
+  int[] toArray() {
+    int[] arr = new int[this.size];
+    for (int i = 0; i < this.size; i++) {
+      arr[i] = this.get(i);
+    }
+    return arr;
   }
 
-  // moves the player to given coordinates 
-  void movePlayer(int y, int x) {
-    this.travelled.add(player);
-    this.player = this.vertices.get(y).get(x);
+  // EFFECT: doubles the buffer, unwrapping the items to start at 0
+  void grow() {
+    int[] bigger = new int[this.items.length * 2];
+    for (int i = 0; i < this.size; i++) {
+      bigger[i] = this.get(i);
+    }
+    this.items = bigger;
+    this.head = 0;
   }
+}
 
-  // resets the maze
-  void newMaze() {
-    this.vertices = this.makeNodes();
-    this.key = this.vertices.get(0).get(0);
-    this.edges = new ArrayList<Edge>();
-    this.worklist = this.initEdges(this.vertices);
-    this.map = new HashMap<MazeNode, MazeNode>();
-    this.travelled = new ArrayList<MazeNode>();
-    this.resetSearch();
-    this.searching = false;
-    this.krusAlg();
-    this.setEdges(vertices);
+// represents a binary min-heap of ints ordered by long keys, kept in parallel
+// arrays that double when full
+class IntHeap {
+  int[] items;
+  long[] keys;
+  int size;
+
+  IntHeap() {
+    this.items = new int[16];
+    this.keys = new long[16];
+    this.size = 0;
   }
 
-  // resets the search path 
-  void resetSearch() {
-    this.searched = new LinkedList<MazeNode>();
-    this.work = new LinkedList<MazeNode>();
-    this.work.add(this.vertices.get(0).get(0));
-    this.path = new LinkedList<MazeNode>();
-    this.searching = true;
-    this.finished = false;
-    this.addMethod = new DfsAdd<MazeNode>();
-    this.searchMap = new HashMap<MazeNode, MazeNode>();
-    for (MazeNode v : this.flattenArray(this.vertices)) {
-      v.seen = false;
-    }
-    MazeNode start = this.vertices.get(0).get(0);
-    this.searchMap.put(start, null);
-    this.work.add(start);
+  // checks if this heap has no items
+  boolean isEmpty() {
+    return this.size == 0;
   }
 
-  // checks if player is at the end and produces end scene
-  public WorldEnd worldEnds() {
-    if (this.player.equals(this.vertices.get(this.height - 1).get(this.width - 1))) {
-      WorldScene bg = this.makeScene();
-      WorldImage winCondition;
-      winCondition = new TextImage("You Won!", 20, Color.GREEN);
-      WorldImage textBox = new RectangleImage(100, 55, OutlineMode.SOLID, Color.white);
-      WorldImage display = new OverlayImage(winCondition, textBox);
-      bg.placeImageXY(display, this.width * this.nodeSize / 2, this.height * this.nodeSize / 2);
-      return new WorldEnd(true, bg);
+  // EFFECT: adds the item with the given key
+  void add(int item, long key) {
+    if (this.size == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.size * 2);
+      this.keys = Arrays.copyOf(this.keys, this.size * 2);
     }
-    else {
-      return new WorldEnd(false, this.makeScene());
+    int i = this.size++;
+    while (i > 0 && this.keys[(i - 1) / 2] > key) {
+      this.items[i] = this.items[(i - 1) / 2];
+      this.keys[i] = this.keys[(i - 1) / 2];
+      i = (i - 1) / 2;
     }
+    this.items[i] = item;
+    this.keys[i] = key;
   }
 
-  // draws the scene
-  public WorldScene makeScene() {
-    MazeNode end = this.vertices.get(height - 1).get(width - 1);
-    WorldScene bg = new WorldScene(this.width * this.nodeSize, this.height * this.nodeSize);
-    ArrayList<MazeNode> nodes = this.flattenArray(this.vertices);
-    WorldImage player = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-        Color.RED);
-    WorldImage startPoint = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-        Color.blue);
-    WorldImage endPoint = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-        Color.MAGENTA);
-    if (this.showPaths) {
-      // draws the player's path
-      for (MazeNode v : this.travelled) {
-        WorldImage point = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-            new Color(255, 200, 221));
-        bg.placeImageXY(point, v.x * this.nodeSize + this.nodeSize / 2,
-            v.y * this.nodeSize + this.nodeSize / 2);
+  // EFFECT: removes and produces the item with the smallest key
+  int removeMin() {
+    if (this.size == 0) {
+      throw new IllegalStateException("Heap is empty");
+    }
+    int min = this.items[0];
+    this.size--;
+    int item = this.items[this.size];
+    long key = this.keys[this.size];
+    int i = 0;
+    while (i * 2 + 1 < this.size) {
+      int child = i * 2 + 1;
+      if (child + 1 < this.size && this.keys[child + 1] < this.keys[child]) {
+        child++;
       }
-
-      // draws the searching path
-      for (MazeNode v : this.searched) {
-        WorldImage point = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-            new Color(189, 224, 254));
-        bg.placeImageXY(point, v.x * this.nodeSize + this.nodeSize / 2,
-            v.y * this.nodeSize + this.nodeSize / 2);
+      if (this.keys[child] >= key) {
+        break;
       }
+      this.items[i] = this.items[child];
+      this.keys[i] = this.keys[child];
+      i = child;
     }
+    this.items[i] = item;
+    this.keys[i] = key;
+    return min;
+  }
 
-    // draws the correct solution
-    if (this.finished) {
-      for (MazeNode v : this.path) {
-        WorldImage point = new RectangleImage(this.nodeSize, this.nodeSize, OutlineMode.SOLID,
-            new Color(133, 196, 255));
-        bg.placeImageXY(point, v.x * this.nodeSize + this.nodeSize / 2,
-            v.y * this.nodeSize + this.nodeSize / 2);
-      }
-    }
-    bg.placeImageXY(endPoint, (end.x + 1) * this.nodeSize - this.nodeSize / 2,
-        (end.y + 1) * this.nodeSize - this.nodeSize / 2);
-    bg.placeImageXY(startPoint, this.nodeSize / 2, this.nodeSize / 2);
+  // EFFECT: removes every item, keeping the arrays
+  void clear() {
+    this.size = 0;
+  }
+}
 
-    bg.placeImageXY(player, this.player.x * this.nodeSize + this.nodeSize / 2,
-        this.player.y * this.nodeSize + this.nodeSize / 2);
+// represents a search strategy that owns the frontier and decides which cell comes next
+interface SearchAdd {
+  // EFFECT: empties the frontier for a new search toward the goal on the grid
+  void reset(MazeGrid grid, int goal);
 
-    // draws walls
-    while (nodes.size() > 0) { 
-      MazeNode cur = nodes.get(0);
-      nodes.remove(0);
-      if (cur.rightBlocked) {
-        bg.placeImageXY(cur.drawEdge(1, this.nodeSize), (cur.x + 1) * this.nodeSize,
-            (cur.y + 1) * this.nodeSize - this.nodeSize / 2);
-      }
-      if (cur.downBlocked) { 
-        bg.placeImageXY(cur.drawEdge(this.nodeSize, 1),
-            (cur.x + 1) * this.nodeSize - this.nodeSize / 2, (cur.y + 1) * this.nodeSize);
-      }
-    }
-    return bg;
+  // EFFECT: adds the cell, reached from the given cell (-1 where a search starts),
+  // to the frontier
+  void add(int cell, int from);
+
+  // EFFECT: removes and produces the next cell to expand
+  int next();
+
+  // checks if the frontier has no cells left
+  boolean isEmpty();
+
+  // checks if the search also grows from the goal, meeting in the middle
+  boolean fromBothEnds();
+}
+
+// represents breadth first search, expanding cells in the order they were found
+class BfsAdd implements SearchAdd {
+  IntDeque work = new IntDeque();
+
+  // EFFECT: empties the frontier for a new search
+  public void reset(MazeGrid grid, int goal) {
+    this.work.clear();
   }
 
-  // turns a 2d array into a 1d array
-  public ArrayList<MazeNode> flattenArray(ArrayList<ArrayList<MazeNode>> nodes) {
-    ArrayList<MazeNode> ans = new ArrayList<MazeNode>();
-    for (ArrayList<MazeNode> array : nodes) {
-      ans.addAll(array);
-    }
-    return ans;
+  // EFFECT: adds the cell to the back of the frontier
+  public void add(int cell, int from) {
+    this.work.addLast(cell);
+  }
+
+  // EFFECT: removes and produces the oldest cell in the frontier
+  public int next() {
+    return this.work.removeFirst();
+  }
+
+  // checks if the frontier has no cells left
+  public boolean isEmpty() {
+    return this.work.isEmpty();
+  }
+
+  // checks if the search also grows from the goal
+  public boolean fromBothEnds() {
+    return false;
   }
 }
 
-// represents a function to add an item to a linked list
-interface SearchAdd<T> {
-  LinkedList<T> add(LinkedList<T> list, T item);
+// represents breadth first search grown from the start and the goal at once,
+// stopping where the two meet
+class BiBfsAdd extends BfsAdd {
+  // checks if the search also grows from the goal
+  public boolean fromBothEnds() {
+    return true;
+  }
 }
 
-// represents breadth first search for a list
-class BfsAdd<T> implements SearchAdd<T> {
-  public LinkedList<T> add(LinkedList<T> list, T item) {
-    list.addLast(item);
-    return list;
+// represents depth first search, expanding the newest cell found first
+class DfsAdd implements SearchAdd {
+  IntDeque work = new IntDeque();
+
+  // EFFECT: empties the frontier for a new search
+  public void reset(MazeGrid grid, int goal) {
+    this.work.clear();
+  }
+
+  // EFFECT: adds the cell to the front of the frontier
+  public void add(int cell, int from) {
+    this.work.addFirst(cell);
+  }
+
+  // EFFECT: removes and produces the newest cell in the frontier
+  public int next() {
+    return this.work.removeFirst();
+  }
+
+  // checks if the frontier has no cells left
+  public boolean isEmpty() {
+    return this.work.isEmpty();
+  }
+
+  // checks if the search also grows from the goal
+  public boolean fromBothEnds() {
+    return false;
   }
 }
 
-// represents depth first search for a list
-class DfsAdd<T> implements SearchAdd<T> {
-  public LinkedList<T> add(LinkedList<T> list, T item) {
-    list.addFirst(item);
-    return list;
+// represents A* search, expanding the cell with the smallest steps taken plus
+// Manhattan distance left, preferring the cell closer to the goal on ties
+class AStarAdd implements SearchAdd {
+  IntHeap work = new IntHeap();
+  int[] depth = new int[0];
+  int width;
+  int goalX;
+  int goalY;
+
+  // EFFECT: empties the frontier for a new search toward the goal on the grid
+  public void reset(MazeGrid grid, int goal) {
+    this.work.clear();
+    if (this.depth.length < grid.cells()) {
+      this.depth = new int[grid.cells()];
+    }
+    this.width = grid.width;
+    this.goalX = grid.xOf(goal);
+    this.goalY = grid.yOf(goal);
+  }
+
+  // EFFECT: adds the cell to the frontier, one step further than the cell it came from
+  public void add(int cell, int from) {
+    int steps = from < 0 ? 0 : this.depth[from] + 1;
+    int left = Math.abs(cell % this.width - this.goalX) + Math.abs(cell / this.width - this.goalY);
+    this.depth[cell] = steps;
+    this.work.add(cell, ((long) (steps + left) << 32) | left);
+  }
+
+  // EFFECT: removes and produces the most promising cell in the frontier
+  public int next() {
+    return this.work.removeMin();
+  }
+
+  // checks if the frontier has no cells left
+  public boolean isEmpty() {
+    return this.work.isEmpty();
+  }
+
+  // checks if the search also grows from the goal
+  public boolean fromBothEnds() {
+    return false;
   }
 }
 
 // represents examples of mazes and tests program methods
 class ExamplesMaze {
+  // represents a node of the graph the grid replaced, with the fields it had
+  static class GraphNode {
+    GraphEdge right;
+    GraphEdge bottom;
+    GraphEdge left;
+    GraphEdge top;
+    boolean rightBlocked = true;
+    boolean downBlocked = true;
+    int x;
+    int y;
+    boolean seen;
+
+    GraphNode(int x, int y) {
+      this.x = x;
+      this.y = y;
+    }
+  }
+
+  // represents an edge of the graph the grid replaced, with the fields it had
+  static class GraphEdge {
+    GraphNode from;
+    GraphNode to;
+    int weight;
+
+    GraphEdge(GraphNode from, GraphNode to, int weight) {
+      this.from = from;
+      this.to = to;
+      this.weight = weight;
+    }
+  }
 
   MazeWorld f1;
   MazeWorld f2;
   MazeWorld f3;
   MazeWorld f4;
   MazeNode testVertex = new MazeNode(0, 0);
-  Edge testEdge1 = new Edge(10);
-  Edge testEdge2 = new Edge(20);
-
-  HashMap<MazeNode, MazeNode> map = new HashMap<MazeNode, MazeNode>();
 
   MazeNode v0;
   MazeNode v1;
@@ -530,14 +2149,14 @@ class ExamplesMaze {
     f1 = new MazeWorld(10, 10);
     f2 = new MazeWorld(5, 10);
     f3 = new MazeWorld(3, 3);
-    f4 = new MazeWorld(10, 10, new Random(100));
-
-    v0 = this.f1.vertices.get(0).get(0);
-    v1 = this.f1.vertices.get(1).get(0);
-    v2 = this.f1.vertices.get(2).get(0);
-    v3 = this.f1.vertices.get(0).get(1);
-    v4 = this.f1.vertices.get(1).get(1);
-    v5 = this.f1.vertices.get(2).get(1);
+    f4 = new MazeWorld(10, 10, 100);
+
+    v0 = this.f1.grid.node(0);
+    v1 = this.f1.grid.node(10);
+    v2 = this.f1.grid.node(20);
+    v3 = this.f1.grid.node(1);
+    v4 = this.f1.grid.node(11);
+    v5 = this.f1.grid.node(21);
   }
 
   // tests drawEdge method
@@ -548,19 +2167,17 @@ class ExamplesMaze {
         new RectangleImage(10, 1, OutlineMode.SOLID, Color.black));
   }
 
-  // tests compareTo method
-  void testCompareTo(Tester t) {
-    t.checkExpect(this.testEdge1.compareTo(this.testEdge2), -10);
-    t.checkExpect(this.testEdge1.compareTo(this.testEdge1), 0);
-    t.checkExpect(this.testEdge2.compareTo(this.testEdge1), 10);
-  }
-
-  // tests makeNodes method
-  void testmakeNodes(Tester t) {
+  // tests makeGrid method
+  void testMakeGrid(Tester t) {
     initData();
-    t.checkExpect(this.f1.vertices.size(), 10);
-    t.checkExpect(this.f1.vertices.get(0).size(), 10);
-    t.checkExpect(this.f1.player, this.f1.vertices.get(0).get(0));
+    t.checkExpect(this.f1.grid.height, 10);
+    t.checkExpect(this.f1.grid.width, 10);
+    t.checkExpect(this.f1.player, 0);
+    MazeGrid fresh = this.f2.makeGrid();
+    t.checkExpect(fresh.cells(), 50);
+    t.checkExpect(fresh.opened, 0);
+    t.checkExpect(fresh.rightBlocked(0), true);
+    t.checkExpect(fresh.downBlocked(49), true);
   }
 
   // tests constructorExpection
@@ -578,79 +2195,347 @@ class ExamplesMaze {
   // tests initEdges
   void testInitEdges(Tester t) {
     initData();
-    ArrayList<ArrayList<MazeNode>> array = f1.vertices;
-    t.checkExpect(f1.initEdges(array).size(),
-        f1.width * f1.height * 2 - 10 - 10);
-    t.checkExpect(array.get(0).get(0).top.from, null);
-    t.checkExpect(array.get(0).get(0).top.to, array.get(0).get(0));
-    t.checkExpect(array.get(0).get(0).right.from, array.get(0).get(0));
-    t.checkExpect(array.get(0).get(0).right.to, array.get(0).get(1));
-    t.checkExpect(array.get(0).get(0).left.from, null);
-    t.checkExpect(array.get(0).get(0).left.to, array.get(0).get(0));
-    t.checkExpect(array.get(0).get(0).bottom.from, array.get(0).get(0));
-    t.checkExpect(array.get(0).get(0).bottom.to, array.get(1).get(0));
-
-    t.checkExpect(array.get(9).get(9).top.from, array.get(8).get(9));
-    t.checkExpect(array.get(9).get(9).top.to, array.get(9).get(9));
-    t.checkExpect(array.get(9).get(9).right.from, array.get(9).get(9));
-    t.checkExpect(array.get(9).get(9).right.to, null);
-    t.checkExpect(array.get(9).get(9).left.from, array.get(9).get(8));
-    t.checkExpect(array.get(9).get(9).left.to, array.get(9).get(9));
-    t.checkExpect(array.get(9).get(9).bottom.from, array.get(9).get(9));
-    t.checkExpect(array.get(9).get(9).bottom.to, null);
-  }
-
-  // tests setEdges method
-  void testSetEdges(Tester t) {
+    int[] weights = f1.initEdges();
+    int present = 0;
+    for (int w : weights) {
+      if (w >= 0) {
+        present++;
+        t.checkExpect(w < 100, true);
+      }
+    }
+    t.checkExpect(weights.length, 200);
+    t.checkExpect(present, f1.width * f1.height * 2 - 10 - 10);
+    t.checkExpect(weights[0] >= 0, true);
+    t.checkExpect(weights[1] >= 0, true);
+    t.checkExpect(weights[18], -1);
+    t.checkExpect(weights[19] >= 0, true);
+    t.checkExpect(weights[180] >= 0, true);
+    t.checkExpect(weights[181], -1);
+    t.checkExpect(weights[198], -1);
+    t.checkExpect(weights[199], -1);
+  }
+
+  // tests MazeGrid index, xOf and yOf
+  void testGridIndex(Tester t) {
+    MazeGrid g = new MazeGrid(5, 10);
+    t.checkExpect(g.cells(), 50);
+    t.checkExpect(g.index(0, 0), 0);
+    t.checkExpect(g.index(4, 0), 4);
+    t.checkExpect(g.index(2, 3), 17);
+    t.checkExpect(g.xOf(17), 2);
+    t.checkExpect(g.yOf(17), 3);
+  }
+
+  // tests MazeGrid open and isOpen
+  void testGridOpen(Tester t) {
+    MazeGrid g = new MazeGrid(10, 10);
+    t.checkExpect(g.passages.length, 4);
+    g.open(1);
+    t.checkExpect(g.downBlocked(0), false);
+    t.checkExpect(g.rightBlocked(0), true);
+    t.checkExpect(g.isOpen(1), true);
+    t.checkExpect(g.isOpen(0), false);
+    g.open(130);
+    t.checkExpect(g.rightBlocked(65), false);
+    t.checkExpect(g.isOpen(130), true);
+    t.checkExpect(g.passages[2], 4L);
+    t.checkExpect(g.opened, 2);
+    g.open(130);
+    t.checkExpect(g.opened, 2);
+  }
+
+  // tests MazeGrid neighbor
+  void testGridNeighbor(Tester t) {
+    MazeGrid g = new MazeGrid(3, 3);
+    g.open(g.index(1, 1) * 2);
+    g.open(g.index(1, 1) * 2 + 1);
+    g.open(g.index(0, 1) * 2);
+    g.open(g.index(1, 0) * 2 + 1);
+    t.checkExpect(g.neighbor(4, MazeGrid.LEFT), 3);
+    t.checkExpect(g.neighbor(4, MazeGrid.UP), 1);
+    t.checkExpect(g.neighbor(4, MazeGrid.RIGHT), 5);
+    t.checkExpect(g.neighbor(4, MazeGrid.DOWN), 7);
+    t.checkExpect(g.neighbor(5, MazeGrid.LEFT), 4);
+    t.checkExpect(g.neighbor(7, MazeGrid.UP), 4);
+    t.checkExpect(g.neighbor(3, MazeGrid.LEFT), -1);
+    t.checkExpect(g.neighbor(0, MazeGrid.UP), -1);
+    t.checkExpect(g.neighbor(0, MazeGrid.RIGHT), -1);
+    t.checkExpect(g.neighbor(8, MazeGrid.DOWN), -1);
+    t.checkExpect(g.neighbor(8, MazeGrid.RIGHT), -1);
+  }
+
+  // tests MazeGrid node and nodes
+  void testGridNodes(Tester t) {
     initData();
-    ArrayList<ArrayList<MazeNode>> nodes = f1.vertices;
-    MazeNode vert1 = f1.vertices.get(0).get(0);
-    vert1.downBlocked = true;
-    vert1.rightBlocked = true;
-    f1.edges = new ArrayList<Edge>();
-    f1.edges.add(vert1.bottom);
-    f1.setEdges(nodes);
-    t.checkExpect(vert1.downBlocked, false);
-    t.checkExpect(vert1.rightBlocked, true);
+    ArrayList<ArrayList<MazeNode>> rows = f2.grid.nodes();
+    t.checkExpect(rows.size(), 10);
+    t.checkExpect(rows.get(0).size(), 5);
+    t.checkExpect(rows.get(3).get(2).equals(new MazeNode(2, 3)), true);
+    t.checkExpect(rows.get(3).get(2).rightBlocked, f2.grid.rightBlocked(17));
+    t.checkExpect(rows.get(3).get(2).downBlocked, f2.grid.downBlocked(17));
+    t.checkExpect(this.v4.x, 1);
+    t.checkExpect(this.v4.y, 1);
+    t.checkExpect(this.v5.equals(new MazeNode(1, 2)), true);
+    int open = 0;
+    for (ArrayList<MazeNode> row : f1.grid.nodes()) {
+      for (MazeNode v : row) {
+        if (!v.rightBlocked) {
+          open++;
+        }
+        if (!v.downBlocked) {
+          open++;
+        }
+      }
+    }
+    t.checkExpect(open, 99);
+  }
+
+  // tests that the grid takes at least 20 times less memory than the node graph it
+  // replaced, counting the bytes this thread allocates to build each of them: the
+  // graph's rows of nodes, linked right and down by edges kept in one list as well
+  void testGridFootprint(Tester t) {
+    MazeMetrics metrics = new MazeMetrics();
+    long start = metrics.allocatedBytes();
+    ArrayList<ArrayList<GraphNode>> rows = new ArrayList<ArrayList<GraphNode>>();
+    ArrayList<GraphEdge> edges = new ArrayList<GraphEdge>();
+    for (int y = 0; y < 512; y++) {
+      ArrayList<GraphNode> row = new ArrayList<GraphNode>();
+      for (int x = 0; x < 512; x++) {
+        GraphNode node = new GraphNode(x, y);
+        if (x > 0) {
+          GraphEdge edge = new GraphEdge(row.get(x - 1), node, x + y);
+          row.get(x - 1).right = edge;
+          node.left = edge;
+          edges.add(edge);
+        }
+        if (y > 0) {
+          GraphEdge edge = new GraphEdge(rows.get(y - 1).get(x), node, x + y);
+          rows.get(y - 1).get(x).bottom = edge;
+          node.top = edge;
+          edges.add(edge);
+        }
+        row.add(node);
+      }
+      rows.add(row);
+    }
+    long graphBytes = metrics.allocatedBytes() - start;
+    start = metrics.allocatedBytes();
+    MazeGrid grid = new MazeGrid(512, 512);
+    long gridBytes = metrics.allocatedBytes() - start;
+    t.checkExpect(edges.size(), 2 * 512 * 511);
+    t.checkExpect(grid.cells(), 512 * 512);
+    // the counter reads 0 on JVMs that do not keep one, and then there is nothing to check
+    t.checkExpect(gridBytes == 0 || graphBytes / gridBytes >= 20, true);
+  }
+
+  // tests that the same seed always makes the same maze
+  void testSeededMaze(Tester t) {
+    MazeWorld a = new MazeWorld(40, 30, 2024);
+    MazeWorld b = new MazeWorld(40, 30, 2024);
+    MazeWorld c = new MazeWorld(40, 30, 2025);
+    t.checkExpect(a.seed, 2024L);
+    t.checkExpect(a.weights, b.weights);
+    t.checkExpect(a.grid.passages, b.grid.passages);
+    t.checkExpect(Arrays.equals(a.grid.passages, c.grid.passages), false);
+    // resets follow the same sequence of seeds
+    a.onKeyEvent("r");
+    b.onKeyEvent("r");
+    t.checkExpect(a.seed == 2024L, false);
+    t.checkExpect(a.seed, b.seed);
+    t.checkExpect(a.grid.passages, b.grid.passages);
+    a.onKeyEvent("h");
+    b.onKeyEvent("h");
+    t.checkExpect(a.grid.passages, b.grid.passages);
   }
 
   // tests treeDone
   void testTreeDone(Tester t) {
     initData();
-    t.checkExpect(this.f1.edges.size(), 99);
+    t.checkExpect(this.f1.grid.opened, 99);
     t.checkExpect(this.f1.treeDone(), true);
+    this.f1.grid = new MazeGrid(10, 10);
+    t.checkExpect(this.f1.treeDone(), false);
   }
 
   // tests krusAlg method
   void testKrusAlg(Tester t) {
     initData();
-    t.checkExpect(this.f1.edges.size() == 99, true);
-    t.checkExpect(this.f1.worklist.size() < this.f1.edges.size(), true);
-    t.checkExpect(this.f1.worklist.contains(this.f1.edges.get(0)), false);
+    t.checkExpect(this.f1.grid.opened == 99, true);
+    t.checkExpect(this.f1.tree instanceof KruskalTree, true);
+    // every cell is reachable, so the open walls form a spanning tree
+    t.checkExpect(this.reachable(this.f1.grid), 100);
+  }
+
+  // produces the number of cells reachable from the top left corner of the grid
+  int reachable(MazeGrid grid) {
+    boolean[] seen = new boolean[grid.cells()];
+    IntDeque work = new IntDeque();
+    work.addLast(0);
+    seen[0] = true;
+    int count = 0;
+    while (!work.isEmpty()) {
+      int cur = work.removeFirst();
+      count++;
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        int next = grid.neighbor(cur, dir);
+        if (next >= 0 && !seen[next]) {
+          seen[next] = true;
+          work.addLast(next);
+        }
+      }
+    }
+    return count;
+  }
+
+  // tests KruskalTree span
+  void testKruskalSpan(Tester t) {
+    initData();
+    KruskalTree kruskal = new KruskalTree();
+    MazeGrid grid = new MazeGrid(10, 10);
+    kruskal.span(grid, f1.weights, 100);
+    t.checkExpect(grid.passages, f1.grid.passages);
+    t.checkExpect(kruskal.order.length, 180);
+    t.checkExpect(grid.isOpen(kruskal.order[0]), true);
+    for (int i = 1; i < kruskal.order.length; i++) {
+      t.checkExpect(f1.weights[kruskal.order[i - 1]] <= f1.weights[kruskal.order[i]], true);
+    }
+    t.checkExpect(kruskal.sets.find(0), kruskal.sets.find(99));
   }
 
-  // tests flattedArray method
-  void testFlattenArray(Tester t) {
+  // tests sortEdges method
+  void testSortEdges(Tester t) {
     initData();
-    ArrayList<ArrayList<MazeNode>> array2d = new ArrayList<ArrayList<MazeNode>>();
-    ArrayList<MazeNode> array1 = new ArrayList<MazeNode>();
-    ArrayList<MazeNode> array2 = new ArrayList<MazeNode>();
-    ArrayList<MazeNode> array3 = new ArrayList<MazeNode>();
+    KruskalTree kruskal = new KruskalTree();
+    t.checkExpect(kruskal.sortEdges(new int[] {3, -1, 0, 3, 1, -1, 0}, 4),
+        new int[] {2, 6, 4, 0, 3});
+    t.checkExpect(kruskal.sortEdges(new int[] {-1, -1}, 4), new int[] {});
+    // same order as a stable sort by weight, so the tree is unchanged
+    int[] order = kruskal.sortEdges(f2.weights, 100);
+    t.checkExpect(order.length, 85);
+    for (int i = 1; i < order.length; i++) {
+      int prev = f2.weights[order[i - 1]];
+      int cur = f2.weights[order[i]];
+      t.checkExpect(prev < cur || (prev == cur && order[i - 1] < order[i]), true);
+    }
+  }
+
+  // tests that BoruvkaTree opens exactly the walls Kruskal's algorithm does
+  void testBoruvkaSpan(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    int[][] sizes = {{2, 2}, {10, 10}, {5, 10}, {2, 40}, {64, 3}, {300, 200}};
+    for (int[] size : sizes) {
+      for (int seed = 0; seed < 3; seed++) {
+        MazeWorld world = new MazeWorld(size[0], size[1], seed);
+        MazeGrid grid = new MazeGrid(size[0], size[1]);
+        BoruvkaTree boruvka = new BoruvkaTree(pool);
+        boruvka.span(grid, world.weights, 100);
+        t.checkExpect(grid.opened, grid.cells() - 1);
+        t.checkExpect(grid.passages, world.grid.passages);
+        t.checkExpect(boruvka.rounds > 0, true);
+      }
+    }
+    // with few distinct weights most edges tie, and ties still go by edge id
+    MazeWorld biased = new MazeWorld(50, 50, 7);
+    biased.onKeyEvent("h");
+    MazeGrid grid = new MazeGrid(50, 50);
+    new BoruvkaTree(pool).span(grid, biased.weights, 100);
+    t.checkExpect(grid.passages, biased.grid.passages);
+    pool.shutdown();
+  }
+
+  // tests the g key switching to parallel generation
+  void testParallelMode(Tester t) {
+    MazeWorld world = new MazeWorld(30, 20, 11);
+    world.onKeyEvent("g");
+    t.checkExpect(world.tree instanceof BoruvkaTree, true);
+    t.checkExpect(world.grid.opened, 599);
+    t.checkExpect(this.reachable(world.grid), 600);
+    MazeWorld serial = new MazeWorld(30, 20, 11);
+    serial.onKeyEvent("r");
+    t.checkExpect(world.grid.passages, serial.grid.passages);
+    world.onKeyEvent("g");
+    t.checkExpect(world.tree instanceof KruskalTree, true);
+  }
 
-    array1.add(this.v0);
-    array2.add(this.v1);
-    array3.add(this.v2);
-    array2d.add(array1);
-    array2d.add(array2);
-    array2d.add(array3);
+  // tests UnionFind find and union
+  void testUnionFind(Tester t) {
+    UnionFind sets = new UnionFind(6);
+    t.checkExpect(sets.find(4), 4);
+    t.checkExpect(sets.union(0, 1), true);
+    t.checkExpect(sets.union(1, 0), false);
+    t.checkExpect(sets.find(1), sets.find(0));
+    t.checkExpect(sets.rank[sets.find(0)], 1);
+    // the shallower set goes under the deeper one
+    t.checkExpect(sets.union(2, 0), true);
+    t.checkExpect(sets.find(2), sets.find(1));
+    t.checkExpect(sets.rank[sets.find(2)], 1);
+    t.checkExpect(sets.union(3, 4), true);
+    t.checkExpect(sets.union(4, 2), true);
+    t.checkExpect(sets.rank[sets.find(4)], 2);
+    t.checkExpect(sets.find(5) == sets.find(0), false);
+    // find leaves every cell on the path pointing at the representative
+    t.checkExpect(sets.parent[1], 0);
+    t.checkExpect(sets.parent[0], 3);
+    t.checkExpect(sets.find(1), 3);
+    t.checkExpect(sets.parent[1], 3);
+  }
+
+  // tests that the union-find work per cell stays flat as the board grows to 4096x4096
+  void testUnionFindScaling(Tester t) {
+    double small = this.unionFindStepsPerCell(256);
+    double medium = this.unionFindStepsPerCell(1024);
+    double large = this.unionFindStepsPerCell(4096);
+    t.checkExpect(small < 4, true);
+    t.checkExpect(medium < small * 1.5, true);
+    t.checkExpect(large < small * 1.5, true);
+  }
 
-    ArrayList<MazeNode> result = new ArrayList<MazeNode>();
-    result.add(this.v0);
-    result.add(this.v1);
-    result.add(this.v2);
+  // runs Kruskal's unions over every edge of a size x size grid in random order
+  // and produces the parent links followed per cell
+  double unionFindStepsPerCell(int size) {
+    int cells = size * size;
+    int[] order = new int[cells * 2];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    SplittableRandom rand = new SplittableRandom(size);
+    for (int i = order.length - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+    UnionFind sets = new UnionFind(cells);
+    int joined = 0;
+    for (int id : order) {
+      int cell = id / 2;
+      int x = cell % size;
+      int y = cell / size;
+      if (id % 2 == 0 && x < size - 1 && sets.union(cell, cell + 1)) {
+        joined++;
+      }
+      else if (id % 2 == 1 && y < size - 1 && sets.union(cell, cell + size)) {
+        joined++;
+      }
+    }
+    if (joined != cells - 1) {
+      throw new IllegalStateException("Grid was not spanned");
+    }
+    return (double) sets.steps / cells;
+  }
 
-    t.checkExpect(this.f1.flattenArray(array2d), result);
-    t.checkExpect(this.f1.flattenArray(array2d).size(), 3);
+  // tests that generating a whole maze stays near-linear up to 4096x4096, counting
+  // the union-find work per cell rather than timing it
+  void testGenerationScaling(Tester t) {
+    MazeWorld small = new MazeWorld(512, 512, 1);
+    MazeWorld large = new MazeWorld(4096, 4096, 1);
+    t.checkExpect(large.treeDone(), true);
+    double smallFinds = small.metrics.get("krusAlg.finds") / (512.0 * 512);
+    double largeFinds = large.metrics.get("krusAlg.finds") / (4096.0 * 4096);
+    double smallSteps = small.metrics.get("krusAlg.findSteps") / (512.0 * 512);
+    double largeSteps = large.metrics.get("krusAlg.findSteps") / (4096.0 * 4096);
+    t.checkExpect(largeFinds < smallFinds * 1.1, true);
+    t.checkExpect(largeSteps < smallSteps * 4, true);
   }
 
   // tests bigBang
@@ -662,59 +2547,288 @@ class ExamplesMaze {
   // tests search method
   void testSearch(Tester t) {
     initData();
+    f2.onKeyEvent("b");
+    t.checkExpect(f2.searching, true);
     f2.search();
-    t.checkExpect(f2.searchMap.size() > 0, true);
+    t.checkExpect(f2.searched.size(), 1);
+    t.checkExpect(f2.searched.get(0), 0);
+    t.checkExpect(f2.finished, false);
+    while (f2.searching) {
+      f2.search();
+    }
     t.checkExpect(f2.finished, true);
     t.checkExpect(f2.searching, false);
-    t.checkExpect(f2.searchMap.containsKey(f2.vertices.get(0).get(0)), true);
-    t.checkExpect(f2.searchMap.containsKey(f2.vertices.get(f2.height - 1).get(f2.width - 1)), true);
-    t.checkExpect(f2.work.size(), 0);
+    t.checkExpect(f2.searched.size(), f2.result.expanded.length);
+    t.checkExpect(f2.path.size(), f2.result.path.length);
+  }
+
+  // tests search method run until the end is found
+  void testSearchToEnd(Tester t) {
+    initData();
+    f2.onKeyEvent("b");
+    while (f2.searching) {
+      f2.search();
+    }
+    t.checkExpect(f2.finished, true);
+    t.checkExpect(f2.path.get(0), 0);
+    t.checkExpect(f2.path.get(f2.path.size() - 1), f2.grid.cells() - 1);
+    for (int v : f2.searched.toArray()) {
+      t.checkExpect(v == f2.grid.cells() - 1, false);
+    }
+    // each step of the path goes through an open wall
+    for (int i = 1; i < f2.path.size(); i++) {
+      int from = f2.path.get(i - 1);
+      int to = f2.path.get(i);
+      boolean linked = false;
+      for (int dir = MazeGrid.LEFT; dir <= MazeGrid.DOWN; dir++) {
+        linked = linked || f2.grid.neighbor(from, dir) == to;
+      }
+      t.checkExpect(linked, true);
+    }
+  }
+
+  // tests Solver solve on a small known maze
+  void testSolve(Tester t) {
+    // 0 1 2
+    // 3 4 5   open: 0-1, 1-2, 0-3, 1-4, 4-5, 3-6, 4-7, 7-8
+    // 6 7 8
+    MazeGrid g = new MazeGrid(3, 3);
+    int[] open = {0, 2, 1, 3, 8, 7, 9, 14};
+    for (int id : open) {
+      g.open(id);
+    }
+    Solver solver = new Solver();
+    SearchResult bfs = solver.solve(g, new BfsAdd(), 0, 8);
+    t.checkExpect(bfs.expanded, new int[] {0, 1, 3, 2, 4, 6, 5, 7});
+    t.checkExpect(bfs.path, new int[] {0, 1, 4, 7, 8});
+    SearchResult dfs = solver.solve(g, new DfsAdd(), 0, 8);
+    t.checkExpect(dfs.expanded, new int[] {0, 3, 6, 1, 4, 7});
+    t.checkExpect(dfs.path, new int[] {0, 1, 4, 7, 8});
+    t.checkExpect(solver.solve(g, new BfsAdd(), 8, 8).path, new int[] {8});
+    t.checkExpect(solver.solve(g, new BfsAdd(), 5, 6).path,
+        new int[] {5, 4, 1, 0, 3, 6});
+    // an unreachable goal gives back every reachable cell and no path
+    MazeGrid split = new MazeGrid(2, 2);
+    split.open(0);
+    SearchResult none = solver.solve(split, new BfsAdd(), 0, 3);
+    t.checkExpect(none.expanded, new int[] {0, 1});
+    t.checkExpect(none.path, new int[] {});
+  }
+
+  // tests that the solver reuses its buffers and agrees with the replayed search
+  void testSolveMatchesReplay(Tester t) {
+    MazeWorld world = new MazeWorld(40, 40, 3);
+    Solver solver = new Solver();
+    for (int i = 0; i < 3; i++) {
+      SearchResult dfs = solver.solve(world.grid, new DfsAdd(), 0, 1599);
+      t.checkExpect(dfs.path[0], 0);
+      t.checkExpect(dfs.path[dfs.path.length - 1], 1599);
+      SearchResult bfs = solver.solve(world.grid, new BfsAdd(), 0, 1599);
+      t.checkExpect(bfs.path, dfs.path);
+    }
+    t.checkExpect(solver.parent.length, 1600);
+    world.onKeyEvent("d");
+    while (world.searching) {
+      world.onTick();
+    }
+    t.checkExpect(world.searched.toArray(), solver.solve(world.grid, new DfsAdd(), 0, 1599).expanded);
+  }
+
+  // tests backPath method
+  void testBackPath(Tester t) {
+    Solver solver = new Solver();
+    solver.parent = new int[] {-1, 0, 1, 0, 3};
+    t.checkExpect(solver.backPath(0), new int[] {0});
+    t.checkExpect(solver.backPath(2), new int[] {0, 1, 2});
+    t.checkExpect(solver.backPath(4), new int[] {0, 3, 4});
   }
 
   // tests onTick method
   void testOnTick(Tester t) {
     initData();
-    f3.searching = true;
-    // what should happen if search method was called properly in onTick
-    t.checkExpect(f3.searchMap.size() > 0, true);
+    f3.onTick();
+    t.checkExpect(f3.searched.size(), 0);
+    f3.onKeyEvent("d");
+    f3.onTick();
+    t.checkExpect(f3.searched.size(), 1);
+    for (int i = 0; i < 9; i++) {
+      f3.onTick();
+    }
     t.checkExpect(f3.finished, true);
     t.checkExpect(f3.searching, false);
-    t.checkExpect(f3.searchMap.containsKey(f3.vertices.get(0).get(0)), true);
-    t.checkExpect(f3.searchMap.containsKey(f3.vertices.get(f3.height - 1).get(f3.width - 1)), true);
-    t.checkExpect(f3.work.size(), 0);  
+    t.checkExpect(f3.path.get(0), 0);
+    t.checkExpect(f3.path.get(f3.path.size() - 1), f3.grid.cells() - 1);
+  }
+
+  // tests the i key showing solutions at once
+  void testInstantSolve(Tester t) {
+    initData();
+    f1.onKeyEvent("i");
+    t.checkExpect(f1.animate, false);
+    f1.onKeyEvent("b");
+    t.checkExpect(f1.finished, true);
+    t.checkExpect(f1.searching, false);
+    t.checkExpect(f1.path.get(f1.path.size() - 1), 99);
+    t.checkExpect(f1.searched.size(), f1.result.expanded.length);
+    f1.onKeyEvent("i");
+    f1.onKeyEvent("d");
+    t.checkExpect(f1.finished, false);
+    t.checkExpect(f1.searching, true);
+  }
+
+  // tests the distance field against a breadth first solve
+  void testDistanceField(Tester t) {
+    initData();
+    DistanceField field = new DistanceField(f1.grid, 99);
+    t.checkExpect(field.pathFrom(0), f1.solver.solve(f1.grid, new BfsAdd(), 0, 99).path);
+    t.checkExpect(field.distance[0], field.pathFrom(0).length - 1);
+    t.checkExpect(field.pathFrom(99), new int[] {99});
+    t.checkExpect(field.directionFrom(99), -1);
+    boolean all = true;
+    for (int cell = 0; cell < 99; cell++) {
+      int[] path = field.pathFrom(cell);
+      all = all && path[path.length - 1] == 99
+          && f1.grid.neighbor(cell, field.directionFrom(cell)) == field.next[cell];
+    }
+    t.checkExpect(all, true);
+    DistanceField cut = new DistanceField(new MazeGrid(3, 3), 8);
+    t.checkExpect(cut.pathFrom(0), new int[0]);
+    t.checkExpect(cut.directionFrom(0), -1);
+  }
+
+  // tests the p key showing the route from the player and the f key building routes
+  // in the background
+  void testShowRoute(Tester t) {
+    initData();
+    int step = f1.grid.neighbor(0, MazeGrid.RIGHT) >= 0 ? MazeGrid.RIGHT : MazeGrid.DOWN;
+    f1.player = f1.grid.neighbor(0, step);
+    f1.onKeyEvent("p");
+    t.checkExpect(f1.finished, true);
+    t.checkExpect(f1.path.get(0), f1.player);
+    t.checkExpect(f1.path.get(f1.path.size() - 1), 99);
+    t.checkExpect(f1.path.size(), f1.field.distance[f1.player] + 1);
+    t.checkExpect(f1.metrics.get("field.runs"), 1L);
+    t.checkExpect(f1.grid.neighbor(f1.player, f1.hint()), f1.path.get(1));
+    f1.onKeyEvent("p");
+    t.checkExpect(f1.metrics.get("field.runs"), 1L);
+    f1.onKeyEvent("f");
+    f1.onKeyEvent("r");
+    t.checkExpect(f1.pendingField != null, true);
+    t.checkExpect(f1.field().grid, f1.grid);
+    t.checkExpect(f1.pendingField, null);
+    t.checkExpect(f1.metrics.get("field.runs"), 1L);
+    f1.onKeyEvent("f");
+    f1.onKeyEvent("r");
+    t.checkExpect(f1.pendingField, null);
+    f1.onKeyEvent("p");
+    t.checkExpect(f1.metrics.get("field.runs"), 2L);
+    t.checkExpect(f1.path.get(0), 0);
+  }
+
+  // tests the tree index against breadth first solves between random cells
+  void testTreeIndex(Tester t) {
+    Solver solver = new Solver();
+    SplittableRandom rand = new SplittableRandom(5);
+    boolean same = true;
+    for (long seed = 0; seed < 4; seed++) {
+      MazeWorld w = new MazeWorld(25 + (int) seed, 31, seed);
+      TreeIndex index = w.index();
+      int[] from = new int[200];
+      int[] to = new int[200];
+      int[] out = new int[200];
+      for (int i = 0; i < 200; i++) {
+        from[i] = rand.nextInt(w.grid.cells());
+        to[i] = rand.nextInt(w.grid.cells());
+        int[] bfs = solver.solve(w.grid, new BfsAdd(), from[i], to[i]).path;
+        same = same && Arrays.equals(index.path(from[i], to[i]), bfs)
+            && index.distance(from[i], to[i]) == bfs.length - 1;
+      }
+      index.distances(from, to, out);
+      for (int i = 0; i < 200; i++) {
+        same = same && out[i] == bfs(solver, w.grid, from[i], to[i]);
+      }
+    }
+    t.checkExpect(same, true);
+    initData();
+    TreeIndex index = f1.index();
+    t.checkExpect(f1.index() == index, true);
+    t.checkExpect(index.lca(37, 37), 37);
+    t.checkExpect(index.path(37, 37), new int[] {37});
+    t.checkExpect(index.lca(0, 99), 0);
+    t.checkExpect(index.path(0, 99), f1.solver.solve(f1.grid, new BfsAdd(), 0, 99).path);
+    t.checkException(new IllegalArgumentException("Mismatched pairs"), index, "distances",
+        new int[2], new int[1], new int[2]);
+    f1.newMaze();
+    t.checkExpect(f1.index() == index, false);
+  }
+
+  // produces the steps on the shortest path between two cells, found by searching
+  int bfs(Solver solver, MazeGrid grid, int from, int to) {
+    return solver.solve(grid, new BfsAdd(), from, to).path.length - 1;
+  }
+
+  // tests the tree index along a single corridor, where the tour is deepest
+  void testTreeIndexCorridor(Tester t) {
+    MazeGrid line = new MazeGrid(200, 2);
+    for (int x = 0; x < 199; x++) {
+      line.open(x * 2);
+    }
+    line.open(199 * 2 + 1);
+    for (int x = 0; x < 199; x++) {
+      line.open((200 + x) * 2);
+    }
+    TreeIndex index = new TreeIndex(line);
+    t.checkExpect(index.depth[200], 399);
+    t.checkExpect(index.tour.length, 799);
+    t.checkExpect(index.distance(200, 5), 394);
+    t.checkExpect(index.lca(250, 60), 60);
+    t.checkExpect(index.lca(399, 398), 399);
+    t.checkExpect(index.path(5, 2), new int[] {5, 4, 3, 2});
+    t.checkExpect(index.table.length, 5);
   }
 
   // tests onKeyEvent method
   void testOnKey(Tester t) {
     initData();
+    f1.grid = new MazeGrid(10, 10);
+    f1.grid.open(1);
     f1.onKeyEvent("left");
-    t.checkExpect(f1.player.x, 0);
-    t.checkExpect(f1.player.y, 0);
+    t.checkExpect(f1.player, 0);
     f1.onKeyEvent("right");
-    t.checkExpect(f1.player.x, 0);
-    t.checkExpect(f1.player.y, 0);
+    t.checkExpect(f1.player, 0);
     f1.onKeyEvent("up");
-    t.checkExpect(f1.player.x, 0);
-    t.checkExpect(f1.player.y, 0);
+    t.checkExpect(f1.player, 0);
     f1.onKeyEvent("down");
-    t.checkExpect(f1.player.x, 0);
-    t.checkExpect(f1.player.y, 1);
+    t.checkExpect(f1.grid.xOf(f1.player), 0);
+    t.checkExpect(f1.grid.yOf(f1.player), 1);
+    f1.onKeyEvent("up");
+    t.checkExpect(f1.player, 0);
     f1.onKeyEvent("r");
-    t.checkExpect(f1.map.size() > 0, true);
+    t.checkExpect(this.reachable(f1.grid), 100);
+    t.checkExpect(f1.player, 0);
     t.checkExpect(f1.searched.size() == 0, true);
     t.checkExpect(f1.searching, false);
     f1.onKeyEvent("d");
     t.checkExpect(f1.searched.size() > 0, false);
     f1.onKeyEvent("b");
     t.checkExpect(f1.searched.size() > 0, false);
+    f1.onKeyEvent("a");
+    t.checkExpect(f1.addMethod instanceof AStarAdd, true);
+    t.checkExpect(f1.searching, true);
+    f1.onKeyEvent("m");
+    t.checkExpect(f1.addMethod instanceof BiBfsAdd, true);
+    t.checkExpect(f1.result.path[0], 0);
+    t.checkExpect(f1.result.path[f1.result.path.length - 1], 99);
     f1.onKeyEvent("s");
     t.checkExpect(f1.showPaths, false);
     f1.onKeyEvent("h");
-    t.checkExpect(f1.edges.get(20).weight, 2);
+    t.checkExpect(f1.vScale, 10);
+    t.checkExpect(f1.weights[0] < 10, true);
     f1.onKeyEvent("v");
-    t.checkExpect(f1.edges.get(20).weight, 1);
+    t.checkExpect(f1.hScale, 10);
+    t.checkExpect(f1.weights[1] < 10, true);
     f1.onKeyEvent("n");
-    t.checkExpect(f1.map.size() > 0, true);
+    t.checkExpect(this.reachable(f1.grid), 100);
     t.checkExpect(f1.searched.size() == 0, true);
     t.checkExpect(f1.searching, false);
   }
@@ -722,31 +2836,94 @@ class ExamplesMaze {
   // tests  worldEnds method
   void testWorldEnds(Tester t) {
     initData();
-    f1.player = this.f1.vertices.get(9).get(9);
-    if (f1.player.equals(this.f1.vertices.get(9).get(9))) {
-      WorldScene bg = this.f1.makeScene();
-      WorldImage winCondition;
-      if (this.f1.width < 40) {
-        winCondition = new TextImage("You Won!", 15, new Color(205, 180, 219));
-      } else {
-        winCondition = new TextImage("You Won!", 20, new Color(205, 180, 219));
-      }
-      WorldImage textBox = new RectangleImage(100, 55, OutlineMode.SOLID, Color.white);
-      WorldImage display = new OverlayImage(winCondition, textBox);
-      bg.placeImageXY(display, this.f1.width * this.f1.nodeSize / 2, 
-          this.f1.height * this.f1.nodeSize / 2);
-      //return new WorldEnd(true, bg);
-      //t.checkExpect(f1.worldEnds(), bg);
+    t.checkExpect(f1.worldEnds().worldEnds, false);
+    // no scene is built until the world ends
+    t.checkExpect(f1.scene, null);
+    t.checkExpect(f1.metrics.get("makeScene.runs"), 0L);
+    f1.player = 99;
+    t.checkExpect(f1.worldEnds().worldEnds, true);
+    t.checkExpect(f1.metrics.get("makeScene.runs"), 1L);
+  }
+
+  // tests the steps a TickBudget gives a tick
+  void testTickBudget(Tester t) {
+    TickBudget budget = new TickBudget();
+    t.checkExpect(budget.steps(), 1);
+    budget.start(10000000);
+    t.checkExpect(budget.budgetNs, 5000000L);
+    t.checkExpect(budget.steps(), 5000);
+    budget.ran(5000, 10000000);
+    t.checkExpect(budget.stepNs, 1250.0);
+    t.checkExpect(budget.steps(), 4000);
+    // a frame taking more than the rest of the tick comes out of the steps
+    budget.drew(8000000);
+    t.checkExpect(budget.steps(), 1600);
+    budget.drew(20000000);
+    t.checkExpect(budget.steps(), 1);
+    budget.ran(0, 5);
+    t.checkExpect(budget.stepNs, 1250.0);
+    TickBudget set = new TickBudget();
+    set.budgetNs = 2000000;
+    set.start(16000000);
+    t.checkExpect(set.budgetNs, 2000000L);
+  }
+
+  // tests skipping frames while the ticks run late
+  void testSkipFrames(Tester t) {
+    TickBudget budget = new TickBudget();
+    budget.tick(5);
+    budget.tick(100000000);
+    t.checkExpect(budget.skipFrame(), false);
+    budget.start(10000000);
+    budget.tick(110000000);
+    t.checkExpect(budget.behind, false);
+    budget.tick(125000000);
+    t.checkExpect(budget.behind, true);
+    t.checkExpect(budget.skipFrame(), true);
+    t.checkExpect(budget.skipFrame(), false);
+    t.checkExpect(budget.skipFrame(), true);
+    budget.tick(135000000);
+    t.checkExpect(budget.skipFrame(), false);
+    MazeWorld w = new MazeWorld(30, 30, 3);
+    WorldScene first = w.makeScene();
+    w.budget.start(10000000);
+    w.budget.behind = true;
+    w.movePlayer(0, 1);
+    t.checkExpect(w.makeScene() == first && w.drawnPlayer == 0, true);
+    t.checkExpect(w.makeScene() == first && w.drawnPlayer == 1, true);
+    t.checkExpect(w.metrics.get("makeScene.skipped"), 1L);
+  }
+
+  // tests a paced world stepping its search many times a tick
+  void testPacedTicks(Tester t) {
+    MazeWorld w = new MazeWorld(200, 200, 5);
+    w.budget.start(10000000);
+    w.addMethod = new BfsAdd();
+    w.resetSearch();
+    w.onTick();
+    t.checkExpect(w.searched.size() > 1, true);
+    t.checkExpect(w.metrics.get("tick.steps"), (long) w.searched.size());
+    int ticks = 1;
+    while (w.searching) {
+      w.onTick();
+      w.makeScene();
+      ticks++;
     }
+    t.checkExpect(w.searched.toArray(), w.result.expanded);
+    t.checkExpect(ticks < w.result.expanded.length / 10, true);
+    t.checkExpect(w.path.toArray(), w.result.path);
   }
 
   // tests rest method
   void testReset(Tester t) {
     initData();
-
-    t.checkExpect(f1.key, f1.vertices.get(0).get(0));
-    t.checkExpect(f1.edges.size(), 0);
-    t.checkExpect(f1.map.size(), 0);
+    f1.movePlayer(1, 0);
+    f1.newMaze();
+    t.checkExpect(f1.player, 0);
+    t.checkExpect(f1.visits[0], (short) 0);
+    t.checkExpect(f1.stepped.isEmpty(), true);
+    t.checkExpect(f1.grid.opened, 99);
+    t.checkExpect(this.reachable(f1.grid), 100);
   }
 
   // tests resetSearch method
@@ -755,100 +2932,486 @@ class ExamplesMaze {
 
     t.checkExpect(f1.searched.size(), 0);
     t.checkExpect(f1.path.size(), 0);
-    t.checkExpect(f1.searched, true);
-  }
-
-  // tests backPath method
-  void testBackPath(Tester t) {
-    initData();
-    f1.backPath(f1.vertices.get(0).get(0));
-    f1.path = new LinkedList<MazeNode>();
-    f1.path.addFirst(f1.vertices.get(0).get(0));
-    t.checkExpect(f1.path.size(), 0);
+    t.checkExpect(f1.result, null);
+    f1.resetSearch();
+    t.checkExpect(f1.searching, true);
+    t.checkExpect(f1.result.path[f1.result.path.length - 1], 99);
+    f1.clearSearch();
+    t.checkExpect(f1.searching, false);
+    t.checkExpect(f1.result, null);
   }
 
   // testsMovePlayer method
   void testMovePlayer(Tester t) {
     initData();
     f1.movePlayer(1, 1);
-    t.checkExpect(f1.travelled.contains(f1.player), true);
-    t.checkExpect(f1.player, f1.vertices.get(1).get(1));
+    t.checkExpect(f1.visits[0], (short) 1);
+    t.checkExpect(f1.player, 11);
+    f1.movePlayer(0, 0);
+    f1.movePlayer(1, 1);
+    t.checkExpect(f1.visits[0], (short) 2);
+    t.checkExpect(f1.visits[11], (short) 1);
+    t.checkExpect(f1.stepped.size(), 3);
+    f1.visits[5] = Short.MAX_VALUE;
+    f1.visit(5);
+    t.checkExpect(f1.visits[5], Short.MAX_VALUE);
   }
 
   // tests SearchAdd method
   void testSearchAdd(Tester t) {
-    BfsAdd<String> bfs = new BfsAdd<String>();
-    DfsAdd<String> dfs = new DfsAdd<String>();
+    initData();
+    BfsAdd bfs = new BfsAdd();
+    DfsAdd dfs = new DfsAdd();
+    t.checkExpect(bfs.isEmpty(), true);
+    bfs.add(1, -1);
+    bfs.add(2, 1);
+    bfs.add(3, 1);
+    t.checkExpect(bfs.next(), 1);
+    t.checkExpect(bfs.next(), 2);
+    dfs.add(1, -1);
+    dfs.add(2, 1);
+    dfs.add(3, 1);
+    t.checkExpect(dfs.next(), 3);
+    t.checkExpect(dfs.next(), 2);
+    t.checkExpect(dfs.isEmpty(), false);
+    dfs.reset(this.f3.grid, 8);
+    t.checkExpect(dfs.isEmpty(), true);
+    t.checkExpect(bfs.fromBothEnds(), false);
+    t.checkExpect(new BiBfsAdd().fromBothEnds(), true);
+    AStarAdd astar = new AStarAdd();
+    astar.reset(this.f3.grid, 8);
+    astar.add(0, -1);
+    astar.add(1, 0);
+    astar.add(3, 0);
+    astar.add(4, 1);
+    // every cell is tied on steps plus distance, so the one nearest the goal goes first
+    t.checkExpect(astar.next(), 4);
+    t.checkExpect(astar.depth[astar.next()], 1);
+    t.checkExpect(astar.depth[astar.next()], 1);
+    t.checkExpect(astar.next(), 0);
+  }
+
+  // tests IntHeap adding and removing in key order
+  void testIntHeap(Tester t) {
+    IntHeap heap = new IntHeap();
+    t.checkExpect(heap.isEmpty(), true);
+    t.checkException(new IllegalStateException("Heap is empty"), heap, "removeMin");
+    SplittableRandom rand = new SplittableRandom(3);
+    long[] keys = new long[100];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = rand.nextInt(50);
+      heap.add(i, keys[i]);
+    }
+    t.checkExpect(heap.size, 100);
+    long last = -1;
+    for (int i = 0; i < keys.length; i++) {
+      int item = heap.removeMin();
+      t.checkExpect(keys[item] >= last, true);
+      last = keys[item];
+    }
+    t.checkExpect(heap.isEmpty(), true);
+    heap.add(7, 1);
+    heap.clear();
+    t.checkExpect(heap.isEmpty(), true);
+  }
 
-    LinkedList<String> list = new LinkedList<String>();
-    list.add("hello");
+  // tests that A* and bidirectional BFS find the same shortest paths as BFS
+  void testShortestSearches(Tester t) {
+    initData();
+    Solver solver = new Solver();
+    for (long seed = 0; seed < 6; seed++) {
+      MazeWorld w = new MazeWorld(30 + (int) seed, 20, seed);
+      int goal = w.grid.cells() - 1;
+      int[] bfs = solver.solve(w.grid, new BfsAdd(), 0, goal).path;
+      int bfsExpanded = solver.solve(w.grid, new BfsAdd(), 0, goal).expanded.length;
+      SearchResult astar = solver.solve(w.grid, new AStarAdd(), 0, goal);
+      t.checkExpect(astar.path, bfs);
+      t.checkExpect(astar.expanded.length <= bfsExpanded, true);
+      t.checkExpect(solver.solve(w.grid, new BiBfsAdd(), 0, goal).path, bfs);
+      int middle = w.grid.index(7, 5);
+      t.checkExpect(solver.solve(w.grid, new BiBfsAdd(), middle, goal).path,
+          solver.solve(w.grid, new BfsAdd(), middle, goal).path);
+    }
+    t.checkExpect(solver.solve(this.f3.grid, new BiBfsAdd(), 4, 4).path, new int[] {4});
+  }
 
-    list = bfs.add(list, "bye");
-    t.checkExpect(list.get(1), "bye");
+  // tests bidirectional BFS meeting in the middle of a small maze
+  void testBidirectionalSolve(Tester t) {
+    MazeGrid grid = new MazeGrid(3, 3);
+    for (int id : new int[] {0, 2, 1, 3, 8, 7, 9, 14}) {
+      grid.open(id);
+    }
+    SearchResult result = new Solver().solve(grid, new BiBfsAdd(), 0, 8);
+    t.checkExpect(result.path, new int[] {0, 1, 4, 7, 8});
+    t.checkExpect(result.expanded.length < 8, true);
+  }
 
-    list = dfs.add(list, "front");
-    t.checkExpect(list.get(0), "front");
+  // tests IntDeque adding and removing at both ends
+  void testIntDeque(Tester t) {
+    IntDeque deque = new IntDeque(3);
+    t.checkExpect(deque.items.length, 4);
+    t.checkExpect(deque.isEmpty(), true);
+    deque.addLast(1);
+    deque.addLast(2);
+    deque.addFirst(0);
+    t.checkExpect(deque.toArray(), new int[] {0, 1, 2});
+    t.checkExpect(deque.get(0), 0);
+    t.checkExpect(deque.get(2), 2);
+    t.checkExpect(deque.removeFirst(), 0);
+    t.checkExpect(deque.removeLast(), 2);
+    t.checkExpect(deque.size(), 1);
+    t.checkException(new IndexOutOfBoundsException("No item at 1"), deque, "get", 1);
+    deque.clear();
+    t.checkExpect(deque.isEmpty(), true);
+    t.checkException(new IllegalStateException("Deque is empty"), deque, "removeFirst");
+    t.checkException(new IllegalStateException("Deque is empty"), deque, "removeLast");
   }
 
+  // tests IntDeque wrapping around and doubling its buffer
+  void testIntDequeGrow(Tester t) {
+    IntDeque deque = new IntDeque(4);
+    deque.addLast(2);
+    deque.addLast(3);
+    deque.addFirst(1);
+    deque.addFirst(0);
+    // the front has wrapped around to the end of the buffer
+    t.checkExpect(deque.head, 2);
+    deque.addLast(4);
+    t.checkExpect(deque.items.length, 8);
+    t.checkExpect(deque.head, 0);
+    t.checkExpect(deque.toArray(), new int[] {0, 1, 2, 3, 4});
+    for (int i = 5; i < 100; i++) {
+      deque.addLast(i);
+    }
+    for (int i = 0; i < 100; i++) {
+      t.checkExpect(deque.removeFirst(), i);
+    }
+    t.checkExpect(deque.items.length, 128);
+  }
 
   // tests makeScene method
   void testMakeScene(Tester t) {
     initData();
-    MazeNode end = f1.vertices.get(f1.height - 1).get(f1.width - 1);
+    f1.movePlayer(0, 1);
     WorldScene bg = new WorldScene(f1.width * f1.nodeSize, f1.height * f1.nodeSize);
-    ArrayList<MazeNode> nodes = f1.flattenArray(f1.vertices);
     WorldImage player = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
         Color.RED);
     WorldImage startPoint = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
         Color.blue);
     WorldImage endPoint = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
         Color.MAGENTA);
-    if (f1.showPaths) {
-      // draws the player's path
-      for (MazeNode v : f1.travelled) {
-        WorldImage point = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
-            new Color(255, 200, 221));
-        bg.placeImageXY(point, v.x * f1.nodeSize + f1.nodeSize / 2,
-            v.y * f1.nodeSize + f1.nodeSize / 2);
-      }
+    // draws the player's path
+    bg.placeImageXY(new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
+        new Color(255, 200, 221)), 5, 5);
+    bg.placeImageXY(endPoint, 95, 95);
+    bg.placeImageXY(startPoint, 5, 5);
+    bg.placeImageXY(player, 15, 5);
 
-      // draws the searching path
-      for (MazeNode v : f1.searched) {
-        WorldImage point = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
-            new Color(189, 224, 254));
-        bg.placeImageXY(point, v.x * f1.nodeSize + f1.nodeSize / 2,
-            v.y * f1.nodeSize + f1.nodeSize / 2);
+    // draws walls
+    for (ArrayList<MazeNode> row : f1.grid.nodes()) {
+      for (MazeNode cur : row) {
+        if (cur.rightBlocked) {
+          bg.placeImageXY(cur.drawEdge(1, f1.nodeSize), (cur.x + 1) * f1.nodeSize,
+              (cur.y + 1) * f1.nodeSize - f1.nodeSize / 2);
+        }
+        if (cur.downBlocked) { 
+          bg.placeImageXY(cur.drawEdge(f1.nodeSize, 1),
+              (cur.x + 1) * f1.nodeSize - f1.nodeSize / 2, (cur.y + 1) * f1.nodeSize);
+        }
       }
     }
-    if (f1.finished) {
-      for (MazeNode v : f1.path) {
-        WorldImage point = new RectangleImage(f1.nodeSize, f1.nodeSize, OutlineMode.SOLID,
-            new Color(133, 196, 255));
-        bg.placeImageXY(point, v.x * f1.nodeSize + f1.nodeSize / 2,
-            v.y * f1.nodeSize + f1.nodeSize / 2);
+
+    t.checkExpect(f1.makeScene(), bg);
+  }
+
+  // tests drawing the walls into one raster and painting cells over it
+  void testRasterRenderer(Tester t) {
+    MazeWorld w = new MazeWorld(9, 7, 2);
+    RasterRenderer raster = new RasterRenderer();
+    w.renderer = raster;
+    WorldScene scene = w.makeScene();
+    int size = w.nodeSize;
+    int walls = 0;
+    for (int cur = 0; cur < w.grid.cells(); cur++) {
+      int x = w.grid.xOf(cur) * size;
+      int y = w.grid.yOf(cur) * size;
+      t.checkExpect(raster.image.getPixel(x + size - 1, y + size / 2).equals(Color.gray),
+          w.grid.rightBlocked(cur));
+      t.checkExpect(raster.image.getPixel(x + size / 2, y + size - 1).equals(Color.gray),
+          w.grid.downBlocked(cur));
+      walls += (w.grid.rightBlocked(cur) ? 1 : 0) + (w.grid.downBlocked(cur) ? 1 : 0);
+    }
+    t.checkExpect(raster.runs < walls, true);
+    t.checkExpect(raster.image.getPixel(size / 2, size / 2), Color.RED);
+    w.addMethod = new BfsAdd();
+    w.resetSearch();
+    scene = w.makeScene();
+    w.onTick();
+    w.onTick();
+    t.checkExpect(w.makeScene() == scene, true);
+    int second = w.searched.get(1);
+    t.checkExpect(raster.image.getPixel(w.grid.xOf(second) * size + size / 2,
+        w.grid.yOf(second) * size + size / 2), MazeRenderer.SHADES[2]);
+    MazeWorld open = new MazeWorld(4, 3, 2);
+    open.renderer = raster;
+    open.grid = new MazeGrid(4, 3);
+    open.makeScene();
+    // every wall is blocked, so each column and each row of walls is one run
+    t.checkExpect(raster.runs, 7);
+    open.onKeyEvent("o");
+    t.checkExpect(open.renderer instanceof SceneRenderer, true);
+    open.onKeyEvent("o");
+    t.checkExpect(open.renderer instanceof RasterRenderer, true);
+  }
+
+  // tests drawing through a window that follows the player
+  void testViewportRenderer(Tester t) {
+    MazeWorld w = new MazeWorld(300, 200, 6);
+    ViewportRenderer view = new ViewportRenderer(160, 120, 1);
+    w.renderer = view;
+    WorldScene scene = w.makeScene();
+    t.checkExpect(scene.width, 160);
+    t.checkExpect(scene.height, 120);
+    t.checkExpect(view.cellsAcross(160), 20);
+    t.checkExpect(view.left, 0);
+    t.checkExpect(view.top, 0);
+    t.checkExpect(view.image.getPixel(4, 4), Color.RED);
+    for (int y = 0; y < 15; y++) {
+      for (int x = 0; x < 20; x++) {
+        int cur = w.grid.index(x, y);
+        t.checkExpect(view.image.getPixel(x * 8 + 7, y * 8 + 4).equals(Color.gray),
+            w.grid.rightBlocked(cur));
       }
     }
-    bg.placeImageXY(endPoint, (end.x + 1) * f1.nodeSize - f1.nodeSize / 2,
-        (end.y + 1) * f1.nodeSize - f1.nodeSize / 2);
-    bg.placeImageXY(startPoint, f1.nodeSize / 2, f1.nodeSize / 2);
+    int redraws = view.redraws;
+    // a step inside the middle of the window paints two cells, not the window
+    w.player = w.grid.index(1, 0);
+    w.makeScene();
+    t.checkExpect(view.redraws, redraws);
+    t.checkExpect(view.image.getPixel(12, 4), Color.RED);
+    t.checkExpect(view.image.getPixel(4, 4), Color.blue);
+    w.player = w.grid.index(150, 100);
+    t.checkExpect(w.makeScene() == scene, true);
+    t.checkExpect(view.redraws, redraws + 1);
+    t.checkExpect(view.left, 140);
+    t.checkExpect(view.top, 93);
+    t.checkExpect(view.image.getPixel(10 * 8 + 4, 7 * 8 + 4), Color.RED);
+    w.player = w.grid.cells() - 2;
+    w.makeScene();
+    t.checkExpect(view.left, 280);
+    t.checkExpect(view.top, 185);
+    // cells off the window are not painted
+    w.visit(w.grid.index(3, 3));
+    w.makeScene();
+    t.checkExpect(w.stepped.isEmpty(), true);
+    t.checkExpect(w.shade[w.grid.index(3, 3)], (byte) 1);
+    t.checkConstructorException(new IllegalArgumentException("Invalid zoom level"),
+        "ViewportRenderer", 10, 10, 9);
+  }
+
+  // tests zooming the window in and out and drawing blocks of cells as pixels
+  void testViewportZoom(Tester t) {
+    MazeWorld w = new MazeWorld(500, 500, 6);
+    w.onKeyEvent("c");
+    t.checkExpect(w.renderer instanceof ViewportRenderer, true);
+    ViewportRenderer view = (ViewportRenderer) w.renderer;
+    t.checkExpect(w.makeScene().width, 800);
+    w.onKeyEvent("=");
+    t.checkExpect(view.level, 0);
+    w.onKeyEvent("+");
+    t.checkExpect(view.level, 0);
+    for (int i = 0; i < 20; i++) {
+      w.onKeyEvent("-");
+    }
+    t.checkExpect(view.level, ViewportRenderer.ZOOMS.length - 1);
+    t.checkExpect(view.cellsAcross(800), 12800);
+    w.makeScene();
+    // zoomed all the way out the whole maze fits in a corner, one pixel per 16 cells
+    t.checkExpect(view.left, 0);
+    t.checkExpect(view.image.getPixel(0, 0), Color.RED);
+    t.checkExpect(view.image.getPixel(31, 31), Color.MAGENTA);
+    t.checkExpect(view.image.getPixel(40, 40), Color.white);
+    w.addMethod = new BfsAdd();
+    w.resetSearch();
+    w.makeScene();
+    for (int i = 0; i < 3000; i++) {
+      w.onTick();
+    }
+    w.makeScene();
+    // the search shows in the pixels around the start, but not over the player
+    t.checkExpect(view.image.getPixel(1, 0).equals(Color.white)
+        && view.image.getPixel(0, 1).equals(Color.white), false);
+    t.checkExpect(view.image.getPixel(0, 0), Color.RED);
+    w.onKeyEvent("c");
+    t.checkExpect(w.renderer instanceof SceneRenderer, true);
+    t.checkExpect(w.makeScene().width, 5000);
+    // a redraw shows each block's highest shade wherever its cells fall in the block,
+    // and leaves pixels past the maze owned by no cell
+    MazeWorld small = new MazeWorld(40, 40, 6);
+    ViewportRenderer far = new ViewportRenderer(40, 40, 6);
+    small.renderer = far;
+    small.makeScene();
+    int off = small.grid.index(3, 5);
+    small.shade[off] = 3;
+    far.redraw(small);
+    t.checkExpect(far.image.getPixel(0, 1), MazeRenderer.SHADES[3]);
+    t.checkExpect(far.owners[40], off);
+    t.checkExpect(far.image.getPixel(0, 0), Color.RED);
+    t.checkExpect(far.owners[20 * 40 + 20], -1);
+  }
 
-    bg.placeImageXY(player, f1.player.x * f1.nodeSize + f1.nodeSize / 2,
-        f1.player.y * f1.nodeSize + f1.nodeSize / 2);
+  // produces the scene the world would draw from scratch in its current state
+  WorldScene freshScene(MazeWorld w) {
+    w.scene = null;
+    return w.makeScene();
+  }
 
-    // draws walls
-    while (nodes.size() > 0) { 
-      MazeNode cur = nodes.get(0);
-      nodes.remove(0);
-      if (cur.rightBlocked) {
-        bg.placeImageXY(cur.drawEdge(1, f1.nodeSize), (cur.x + 1) * f1.nodeSize,
-            (cur.y + 1) * f1.nodeSize - f1.nodeSize / 2);
-      }
-      if (cur.downBlocked) { 
-        bg.placeImageXY(cur.drawEdge(f1.nodeSize, 1),
-            (cur.x + 1) * f1.nodeSize - f1.nodeSize / 2, (cur.y + 1) * f1.nodeSize);
-      }
+  // tests that frames paint only the cells that changed over the last scene
+  void testIncrementalScene(Tester t) {
+    MazeWorld w = new MazeWorld(12, 9, 4);
+    // keeps the one scene however many images are painted over it
+    ((SceneRenderer) w.renderer).limit = Integer.MAX_VALUE;
+    WorldScene first = w.makeScene();
+    t.checkExpect(w.makeScene() == first, true);
+    w.addMethod = new BfsAdd();
+    w.resetSearch();
+    WorldScene searching = w.makeScene();
+    t.checkExpect(searching == first, false);
+    for (int i = 0; i < 25; i++) {
+      w.onTick();
+      t.checkExpect(w.makeScene() == searching, true);
+    }
+    t.checkExpect(w.searchedCount, w.searched.size());
+    WorldScene built = w.makeScene();
+    MazeWorld copy = new MazeWorld(12, 9, 4);
+    copy.addMethod = new BfsAdd();
+    copy.resetSearch();
+    for (int i = 0; i < 25; i++) {
+      copy.onTick();
+    }
+    t.checkExpect(built, this.freshScene(copy));
+    w.visit(w.player);
+    w.player = w.grid.neighbor(w.player, MazeGrid.RIGHT) >= 0
+        ? w.grid.neighbor(w.player, MazeGrid.RIGHT) : w.grid.neighbor(w.player, MazeGrid.DOWN);
+    copy.visit(copy.player);
+    copy.player = w.player;
+    t.checkExpect(w.makeScene() == built, true);
+    t.checkExpect(built, this.freshScene(copy));
+    while (w.searching) {
+      w.onTick();
+      copy.onTick();
+    }
+    t.checkExpect(w.makeScene() == built, true);
+    t.checkExpect(w.drawnPath, true);
+    t.checkExpect(built, this.freshScene(copy));
+    w.onKeyEvent("s");
+    copy.showPaths = false;
+    t.checkExpect(w.makeScene(), this.freshScene(copy));
+    w.onKeyEvent("n");
+    t.checkExpect(w.makeScene() == built, false);
+    t.checkExpect(w.shade[w.player], (byte) 0);
+  }
+
+  // produces the pixels of the scene painted into an image
+  int[] pixels(WorldScene scene) throws Exception {
+    Method draw = WorldSceneBase.class.getDeclaredMethod("draw", Graphics2D.class);
+    draw.setAccessible(true);
+    BufferedImage image = new BufferedImage(scene.width, scene.height,
+        BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    draw.invoke(scene, g);
+    g.dispose();
+    return image.getRGB(0, 0, scene.width, scene.height, null, 0, scene.width);
+  }
+
+  // tests starting the scene over once painting has crowded it with images
+  void testCrowdedScene(Tester t) throws Exception {
+    MazeWorld w = new MazeWorld(12, 9, 4);
+    SceneRenderer scenes = (SceneRenderer) w.renderer;
+    w.addMethod = new BfsAdd();
+    w.resetSearch();
+    WorldScene searching = w.makeScene();
+    while (w.searching) {
+      w.onTick();
+      w.makeScene();
+      t.checkExpect(scenes.placed <= (long) scenes.limit * w.grid.cells(), true);
     }
+    WorldScene built = w.makeScene();
+    t.checkExpect(built == searching, false);
+    t.checkExpect(scenes.scene, built);
+    MazeWorld copy = new MazeWorld(12, 9, 4);
+    copy.addMethod = new BfsAdd();
+    copy.resetSearch();
+    while (copy.searching) {
+      copy.onTick();
+    }
+    t.checkExpect(this.pixels(built), this.pixels(this.freshScene(copy)));
+  }
 
-    t.checkExpect(f1.makeScene(), bg);
+  // tests the trail as visit counts, drawn as a heatmap when it is on
+  void testHeatmap(Tester t) {
+    MazeWorld w = new MazeWorld(8, 6, 3);
+    w.renderer = new RasterRenderer();
+    int next = w.grid.neighbor(0, MazeGrid.RIGHT) >= 0 ? 1 : 8;
+    int y = w.grid.yOf(next);
+    int x = w.grid.xOf(next);
+    w.makeScene();
+    for (int i = 0; i < 5; i++) {
+      w.movePlayer(y, x);
+      w.movePlayer(0, 0);
+    }
+    t.checkExpect(w.visits[0], (short) 5);
+    t.checkExpect(w.visits[next], (short) 5);
+    WorldScene scene = w.makeScene();
+    RasterRenderer raster = (RasterRenderer) w.renderer;
+    t.checkExpect(raster.image.getPixel(x * 10 + 4, y * 10 + 4), MazeRenderer.SHADES[1]);
+    w.onKeyEvent("t");
+    t.checkExpect(w.makeScene() == scene, false);
+    t.checkExpect(w.shadeOf(next), MazeRenderer.HEAT + 2);
+    t.checkExpect(raster.image.getPixel(x * 10 + 4, y * 10 + 4),
+        MazeRenderer.SHADES[MazeRenderer.HEAT + 2]);
+    scene = w.makeScene();
+    for (int i = 0; i < 3; i++) {
+      w.movePlayer(y, x);
+      w.movePlayer(0, 0);
+    }
+    t.checkExpect(w.makeScene() == scene, true);
+    t.checkExpect(raster.image.getPixel(x * 10 + 4, y * 10 + 4),
+        MazeRenderer.SHADES[MazeRenderer.HEAT + 3]);
+    // hiding the paths stops queueing cells, and showing them paints every visit back
+    w.onKeyEvent("s");
+    w.makeScene();
+    w.movePlayer(y, x);
+    w.makeScene();
+    t.checkExpect(w.stepped.isEmpty(), true);
+    w.onKeyEvent("s");
+    w.makeScene();
+    t.checkExpect(w.shade[0], (byte) 1);
+    w.visits[0] = Short.MAX_VALUE;
+    t.checkExpect(w.shadeOf(0), 5);
+    t.checkExpect(w.shadeOf(next), 6);
+    w.player = 0;
+    t.checkExpect(w.shadeOf(next), MazeRenderer.HEAT + 3);
+    w.visits[next] = Short.MAX_VALUE;
+    t.checkExpect(w.shadeOf(next), MazeRenderer.HEAT + MazeRenderer.HEAT_LEVELS - 1);
+    w.onKeyEvent("r");
+    t.checkExpect(w.visits[next], (short) 0);
+  }
+
+  // tests placeCell method
+  void testPlaceCell(Tester t) {
+    initData();
+    WorldScene bg = new WorldScene(100, 100);
+    WorldScene expected = new WorldScene(100, 100);
+    WorldImage dot = new RectangleImage(10, 10, OutlineMode.SOLID, Color.RED);
+    f1.placeCell(bg, dot, 23);
+    expected.placeImageXY(dot, 35, 25);
+    t.checkExpect(bg, expected);
   }
-}
\ No newline at end of file
+
+  // tests drawWall method
+  void testDrawWall(Tester t) {
+    initData();
+    t.checkExpect(f1.drawWall(1, 10), new RectangleImage(1, 10, OutlineMode.SOLID, Color.gray));
+  }
+}
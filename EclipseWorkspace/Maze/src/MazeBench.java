@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// runs timing reports for the maze outside of the game window, e.g.
+//   java MazeBench solvers 1000
+// where the report is one of metrics, file, stream, pairs, bulk, speedup, solvers, frames,
+// pace or viewport, and the size, when given, is the width and height of the maze; the
+// phases, frontier and render comparisons are JMH benchmarks under jmh/
+class MazeBench {
+  int reps = 5;
+  int warmups = 3;
+  // holds the last result of each phase so that the JIT cannot drop the work
+  Object sink;
+
+  public static void main(String[] args) throws Exception {
+    MazeBench bench = new MazeBench();
+    String report = args.length > 0 ? args[0] : "metrics";
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    if (report.equals("metrics")) {
+      bench.metrics(size);
+    }
+    else if (report.equals("file")) {
+      bench.file(size);
+    }
+    else if (report.equals("stream")) {
+      bench.stream(size, args.length > 2 ? Integer.parseInt(args[2]) : 1000000);
+    }
+    else if (report.equals("pairs")) {
+      bench.pairs(size);
+    }
+    else if (report.equals("bulk")) {
+      bench.bulk(args.length > 1 ? size : 10, args.length > 2 ? Integer.parseInt(args[2]) : 1000000);
+    }
+    else if (report.equals("speedup")) {
+      bench.speedup(size, new int[] {1, 2, 4, 8});
+    }
+    else if (report.equals("solvers")) {
+      bench.solvers(size);
+    }
+    else if (report.equals("viewport")) {
+      bench.viewport(args.length > 1 ? new int[] {size} : new int[] {200, 1000, 4000});
+    }
+    else if (report.equals("pace")) {
+      bench.pace(size);
+    }
+    else if (report.equals("frames")) {
+      bench.frames(size);
+    }
+    else {
+      throw new IllegalArgumentException("Unknown report: " + report);
+    }
+  }
+
+  // prints the metrics summary a size x size world logs for each new maze and each
+  // solve, then leaves them readable over JMX while it is asked to
+  void metrics(int size) throws Exception {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    world.metrics.log = true;
+    world.animate = false;
+    world.metrics.register("maze:type=Metrics");
+    for (int i = 0; i < this.reps; i++) {
+      world.newMaze();
+      world.onKeyEvent(i % 2 == 0 ? "b" : "d");
+      world.makeScene();
+    }
+    System.out.println(world.metrics.summary("makeScene"));
+  }
+
+  // prints the time to generate a size x size maze against saving it and loading
+  // it back from a maze file
+  void file(int size) throws Exception {
+    MazeFile files = new MazeFile();
+    Path path = Files.createTempFile("maze", ".bin");
+    path.toFile().deleteOnExit();
+    MazeWorld world = new MazeWorld(size, size, 1);
+    System.out.printf("%-10s %-12s %10s %10s%n", "size", "step", "ms", "ns/cell");
+    this.phase(world, "generate", () -> { }, () -> new MazeWorld(size, size, 1));
+    this.phase(world, "save", () -> { }, () -> {
+      try {
+        files.save(world, path);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return path;
+    });
+    this.phase(world, "load", () -> { }, () -> {
+      try {
+        return files.load(path);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    System.out.println(Files.size(path) + " bytes on disk");
+  }
+
+  // prints the time and the heap used to stream a width x rows maze into a maze file
+  // a row at a time, then to walk its last row back through a paged view
+  void stream(int width, int rows) throws Exception {
+    MazeFile files = new MazeFile();
+    Path path = Files.createTempFile("maze", ".bin");
+    path.toFile().deleteOnExit();
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long before = runtime.totalMemory() - runtime.freeMemory();
+    long start = System.nanoTime();
+    files.write(new EllerRows(width, rows, 1), 1, path);
+    double millis = (System.nanoTime() - start) / 1e6;
+    long heap = runtime.totalMemory() - runtime.freeMemory() - before;
+    System.out.printf("streamed %dx%d in %.1f ms, %d bytes on disk, heap grew %d bytes%n",
+        width, rows, millis, Files.size(path), Math.max(0, heap));
+    MazeWorld view = files.page(path, 1 << 12, 16);
+    start = System.nanoTime();
+    long open = 0;
+    for (int x = 0; x < width; x++) {
+      open += view.grid.rightBlocked(view.grid.index(x, rows - 1)) ? 0 : 1;
+    }
+    System.out.printf("paged in the last row in %.2f ms, %d walls open, %d page reads%n",
+        (System.nanoTime() - start) / 1e6, open, ((PagedGrid) view.grid).reads);
+    ((PagedGrid) view.grid).close();
+  }
+
+  // prints the time to build the tree index of a size x size maze and to answer a
+  // million distance queries between random cells with it
+  void pairs(int size) {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    SplittableRandom rand = new SplittableRandom(1);
+    int[] from = rand.ints(1000000, 0, world.grid.cells()).toArray();
+    int[] to = rand.ints(1000000, 0, world.grid.cells()).toArray();
+    int[] out = new int[from.length];
+    this.phase(world, "index", () -> { }, () -> new TreeIndex(world.grid));
+    TreeIndex index = world.index();
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < this.warmups + this.reps; i++) {
+      long start = System.nanoTime();
+      index.distances(from, to, out);
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+    }
+    this.sink = out;
+    System.out.printf("%d pairs in %.1f ms, %.1f million pairs a second%n", from.length, best,
+        from.length / best / 1e3);
+  }
+
+  // prints how many size x size mazes a second a bulk run makes and solves with each
+  // number of threads up to the cores available, best of the repetitions
+  void bulk(int size, int count) {
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.println("making and solving " + count + " mazes of " + size + "x" + size
+        + " on " + cores + " available cores");
+    System.out.printf("%8s %10s %14s %10s%n", "threads", "ms", "mazes/s", "speedup");
+    LongAdder steps = new LongAdder();
+    MazeSink sink = (seed, grid, solved) -> steps.add(solved.path.length);
+    double single = 0;
+    for (int n = 1; n <= cores; n *= 2) {
+      MazeBulk bulk = new MazeBulk(size, size, 100, 100, n);
+      double best = Double.MAX_VALUE;
+      for (int i = 0; i < this.warmups + this.reps; i++) {
+        long start = System.nanoTime();
+        bulk.run(i * (long) count, count, sink);
+        best = Math.min(best, (System.nanoTime() - start) / 1e6);
+      }
+      if (single == 0) {
+        single = best;
+      }
+      System.out.printf("%8d %10.1f %14.0f %10.2f%n", n, best, count / best * 1e3, single / best);
+    }
+    this.sink = steps;
+  }
+
+  // prints the best time to run the phase on the world, after setting it up each time
+  // outside the timing
+  void phase(MazeWorld world, String name, Runnable setup, Supplier<Object> phase) {
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < this.warmups + this.reps; i++) {
+      setup.run();
+      long start = System.nanoTime();
+      this.sink = phase.get();
+      long nanos = System.nanoTime() - start;
+      if (i >= this.warmups) {
+        best = Math.min(best, nanos / 1e6);
+      }
+    }
+    System.out.printf("%-10s %-12s %10.2f %10.1f%n", world.width + "x" + world.height, name,
+        best, best * 1e6 / world.grid.cells());
+  }
+
+  // prints the time to span a size x size maze with Kruskal's algorithm and with
+  // Boruvka's algorithm on pools of each of the given thread counts
+  void speedup(int size, int[] threads) {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    System.out.println("spanning " + size + "x" + size + " on "
+        + Runtime.getRuntime().availableProcessors() + " available cores");
+    double serial = this.bestMillis(world, new KruskalTree());
+    System.out.printf("%-10s %8s %10s %10s%n", "mode", "threads", "ms", "speedup");
+    System.out.printf("%-10s %8d %10.1f %10.2f%n", "kruskal", 1, serial, 1.0);
+    double single = 0;
+    for (int n : threads) {
+      ForkJoinPool pool = new ForkJoinPool(n);
+      double millis = this.bestMillis(world, new BoruvkaTree(pool));
+      pool.shutdown();
+      if (single == 0) {
+        single = millis;
+      }
+      System.out.printf("%-10s %8d %10.1f %10.2f%n", "boruvka", n, millis, single / millis);
+    }
+  }
+
+  // produces the best time over the repetitions to span the world's weights
+  double bestMillis(MazeWorld world, SpanningTree tree) {
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < this.reps; i++) {
+      MazeGrid grid = new MazeGrid(world.width, world.height);
+      long start = System.nanoTime();
+      tree.span(grid, world.weights, 100);
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+    }
+    return best;
+  }
+
+  // prints the cells expanded and the time to solve a size x size maze corner to
+  // corner with each search strategy
+  void solvers(int size) {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    Solver solver = new Solver();
+    int goal = world.grid.cells() - 1;
+    String[] names = {"bfs", "dfs", "a*", "bfs both ends"};
+    SearchAdd[] strategies = {new BfsAdd(), new DfsAdd(), new AStarAdd(), new BiBfsAdd()};
+    System.out.println("solving " + size + "x" + size);
+    System.out.printf("%-24s %10s %14s%n", "strategy", "expanded", "path");
+    for (int i = 0; i < names.length; i++) {
+      SearchResult result = solver.solve(world.grid, strategies[i], 0, goal);
+      System.out.printf("%-24s %10d %14d%n", names[i], result.expanded.length,
+          result.path.length);
+    }
+    System.out.printf("%-24s %10s %14s%n", "strategy", "ms", "bytes/solve");
+    for (int i = 0; i < names.length; i++) {
+      SearchAdd strategy = strategies[i];
+      this.report(names[i], () -> solver.solve(world.grid, strategy, 0, goal));
+    }
+  }
+
+  // prints the time and allocation to build one frame of a size x size maze while
+  // a search replays, redrawing the whole scene against painting only what changed
+  void frames(int size) {
+    MazeWorld world = new MazeWorld(size, size, 1);
+    world.addMethod = new BfsAdd();
+    world.resetSearch();
+    world.makeScene();
+    System.out.println("drawing " + size + "x" + size);
+    System.out.printf("%-24s %10s %14s%n", "frame", "ms", "bytes/frame");
+    this.report("full redraw", () -> {
+      world.onTick();
+      world.scene = null;
+      world.makeScene();
+    });
+    this.report("changed cells only", () -> {
+      world.onTick();
+      world.makeScene();
+    });
+  }
+
+  // prints the ticks and the time a BFS of a size x size maze takes to replay in a
+  // window ticking every 0.01 seconds, one step a tick against steps paced to fit
+  // half of each tick, drawing a frame after every tick
+  void pace(int size) {
+    System.out.println("replaying a bfs of " + size + "x" + size + " at 0.01 s a tick");
+    System.out.printf("%-12s %10s %14s %12s%n", "stepping", "ticks", "steps/tick", "seconds");
+    for (int paced = 0; paced < 2; paced++) {
+      MazeWorld world = new MazeWorld(size, size, 1);
+      if (paced == 1) {
+        world.budget.start(10000000);
+      }
+      world.addMethod = new BfsAdd();
+      world.resetSearch();
+      world.makeScene();
+      long ticks = 0;
+      long start = System.nanoTime();
+      while (world.searching) {
+        world.onTick();
+        world.makeScene();
+        ticks++;
+      }
+      double busy = (System.nanoTime() - start) / 1e9;
+      // a tick lasts 0.01 seconds unless its work takes longer
+      System.out.printf("%-12s %10d %14.1f %12.1f%n", paced == 1 ? "paced" : "one a tick",
+          ticks, (double) world.result.expanded.length / ticks, Math.max(busy, ticks * 0.01));
+    }
+  }
+
+  // prints the time to redraw an 800x800 window following the player, at the
+  // default zoom and zoomed all the way out, over mazes of each size
+  void viewport(int[] sizes) {
+    System.out.printf("%-10s %8s %12s%n", "size", "zoom", "redraw ms");
+    for (int size : sizes) {
+      MazeWorld world = new MazeWorld(size, size, 1);
+      for (int level : new int[] {1, ViewportRenderer.ZOOMS.length - 1}) {
+        ViewportRenderer view = new ViewportRenderer(800, 800, level);
+        world.renderer = view;
+        world.scene = null;
+        world.makeScene();
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < this.reps; i++) {
+          long start = System.nanoTime();
+          view.redraw(world);
+          best = Math.min(best, (System.nanoTime() - start) / 1e6);
+        }
+        System.out.printf("%-10s %8d %12.2f%n", size + "x" + size,
+            ViewportRenderer.ZOOMS[level], best);
+      }
+    }
+  }
+
+  // prints the best time and the allocation per run of the given solve
+  void report(String name, Runnable solve) {
+    double best = Double.MAX_VALUE;
+    long bytes = 0;
+    for (int i = 0; i < this.reps * 2; i++) {
+      long allocated = this.allocatedBytes();
+      long start = System.nanoTime();
+      solve.run();
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+      bytes = this.allocatedBytes() - allocated;
+    }
+    System.out.printf("%-24s %10.2f %14d%n", name, best, bytes);
+  }
+
+  // produces the bytes allocated by this thread so far
+  long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+}
@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import tester.*;
+
+// represents where a bulk run sends each maze it makes with its solution; it is
+// called from every worker at once, and the grid belongs to the worker, which makes
+// its next maze in it once accept returns, so a sink copies what it keeps
+interface MazeSink {
+  // EFFECT: takes in the maze made from the given seed and its solve from the top
+  // left cell to the bottom right one
+  void accept(long seed, MazeGrid grid, SearchResult solved);
+}
+
+// represents one worker's scratch for making and solving mazes of one size: the
+// grid, the weights, the spanning tree's order and sets and the solver's buffers,
+// allocated for the first maze and reused for every one after it
+class BulkWorker {
+  MazeGrid grid;
+  int[] weights;
+  int hScale;
+  int vScale;
+  KruskalTree tree = new KruskalTree();
+  Solver solver = new Solver();
+  BfsAdd bfs = new BfsAdd();
+  long made;
+
+  BulkWorker(int width, int height, int hScale, int vScale) {
+    this.grid = new MazeGrid(width, height);
+    this.weights = new int[width * height * 2];
+    this.hScale = hScale;
+    this.vScale = vScale;
+  }
+
+  // EFFECT: makes the maze of the given seed in the grid, the same maze a world
+  // makes from that seed and these scales, and sends it and its solve to the sink
+  void make(long seed, MazeSink sink) {
+    this.grid.clear();
+    this.grid.fillWeights(seed, this.hScale, this.vScale, this.weights);
+    this.tree.span(this.grid, this.weights, Math.max(this.hScale, this.vScale));
+    sink.accept(seed, this.grid, this.solver.solve(this.grid, this.bfs, 0,
+        this.grid.cells() - 1));
+    this.made++;
+  }
+}
+
+// represents making and solving the mazes of a run of seeds across a pool of threads,
+// for building data sets of many mazes outside of any world; the workers claim
+// BATCH seeds at a time from a shared counter, so they stay busy however the work
+// of a maze varies, and each makes its mazes in scratch of its own
+class MazeBulk {
+  static final int BATCH = 256;
+
+  int width;
+  int height;
+  int hScale;
+  int vScale;
+  int threads;
+  MazeMetrics metrics = new MazeMetrics();
+
+  MazeBulk(int width, int height, int hScale, int vScale, int threads) {
+    if (width < 2 || height < 2 || (long) width * height > MazeServer.MAX_CELLS) {
+      throw new IllegalArgumentException("Invalid board size");
+    }
+    if (hScale < 1 || vScale < 1) {
+      throw new IllegalArgumentException("Invalid scales");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("Invalid thread count");
+    }
+    this.width = width;
+    this.height = height;
+    this.hScale = hScale;
+    this.vScale = vScale;
+    this.threads = threads;
+  }
+
+  // EFFECT: makes and solves the mazes of the count seeds from first on, sending each
+  // to the sink as it is done, in no particular order, and waits for all of them;
+  // if the sink or a worker fails, the others stop taking seeds and the failure is
+  // thrown here
+  // produces the number of mazes made
+  long run(long first, long count, MazeSink sink) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Invalid seed count");
+    }
+    AtomicLong next = new AtomicLong();
+    ExecutorService pool = Executors.newFixedThreadPool(this.threads, work -> {
+      Thread thread = new Thread(work, "maze-bulk");
+      thread.setDaemon(true);
+      return thread;
+    });
+    CompletableFuture<?>[] workers = new CompletableFuture<?>[this.threads];
+    long start = System.nanoTime();
+    try {
+      for (int i = 0; i < this.threads; i++) {
+        workers[i] = CompletableFuture.runAsync(() -> this.work(next, first, count, sink), pool);
+      }
+      CompletableFuture.allOf(workers).join();
+    }
+    catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+    }
+    finally {
+      pool.shutdown();
+    }
+    this.metrics.set("bulk.ns", System.nanoTime() - start);
+    this.metrics.add("bulk.totalNs", System.nanoTime() - start);
+    this.metrics.add("bulk.mazes", count);
+    this.metrics.add("bulk.runs", 1);
+    return count;
+  }
+
+  // EFFECT: claims batches of the seeds and makes their mazes until none are left,
+  // or another worker has failed
+  void work(AtomicLong next, long first, long count, MazeSink sink) {
+    BulkWorker worker = new BulkWorker(this.width, this.height, this.hScale, this.vScale);
+    try {
+      for (long at = next.getAndAdd(BATCH); at < count; at = next.getAndAdd(BATCH)) {
+        long end = Math.min(count, at + BATCH);
+        for (long i = at; i < end; i++) {
+          worker.make(first + i, sink);
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      next.set(count);
+      throw e;
+    }
+  }
+}
+
+// represents a sink writing every maze and its solve to one file as they come, each
+// as a record of the maze file format followed by a path record, in the order the
+// workers finish them; each worker fills a buffer of its own and only the write to
+// the file is taken in turn
+class BulkFile implements MazeSink {
+  FileChannel channel;
+  MazeFile files = new MazeFile();
+  int hScale;
+  int vScale;
+  ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>();
+  long records;
+
+  BulkFile(Path file, int hScale, int vScale) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    this.hScale = hScale;
+    this.vScale = vScale;
+  }
+
+  // EFFECT: appends the maze and its path to the file
+  public void accept(long seed, MazeGrid grid, SearchResult solved) {
+    int size = (int) this.files.sizeOf(grid) + this.files.pathSize(solved.path);
+    ByteBuffer out = this.buffers.get();
+    if (out == null || out.capacity() < size) {
+      out = ByteBuffer.allocateDirect(Math.max(size, 1 << 12)).order(ByteOrder.LITTLE_ENDIAN);
+      this.buffers.set(out);
+    }
+    out.clear();
+    this.files.put(out, grid, this.hScale, this.vScale, seed);
+    this.files.putPath(out, solved.expanded.length, solved.path);
+    out.flip();
+    synchronized (this) {
+      try {
+        while (out.hasRemaining()) {
+          this.channel.write(out);
+        }
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("Cannot write maze file", e);
+      }
+      this.records++;
+    }
+  }
+
+  // EFFECT: closes the file
+  void close() throws IOException {
+    this.channel.close();
+  }
+}
+
+// represents examples of making and solving mazes in bulk
+class ExamplesMazeBulk {
+  // represents a sink keeping a copy of the walls and path of every maze by its seed
+  static class Keep implements MazeSink {
+    HashMap<Long, long[]> passages = new HashMap<Long, long[]>();
+    HashMap<Long, int[]> paths = new HashMap<Long, int[]>();
+
+    // EFFECT: copies the maze's walls and path
+    public synchronized void accept(long seed, MazeGrid grid, SearchResult solved) {
+      this.passages.put(seed, grid.passages.clone());
+      this.paths.put(seed, solved.path);
+    }
+  }
+
+  // produces the world made from the given seed and scales
+  MazeWorld world(int width, int height, long seed, int hScale, int vScale) {
+    MazeWorld w = new MazeWorld(width, height, 0);
+    w.seed = seed;
+    w.hScale = hScale;
+    w.vScale = vScale;
+    w.generate();
+    return w;
+  }
+
+  // tests that MazeBulk makes and solves the same mazes MazeWorld does from the seeds
+  void testSameAsWorld(Tester t) {
+    Keep keep = new Keep();
+    MazeBulk bulk = new MazeBulk(13, 9, 100, 10, 3);
+    t.checkExpect(bulk.run(500, 40, keep), 40L);
+    t.checkExpect(keep.passages.size(), 40);
+    boolean same = true;
+    for (long seed = 500; seed < 540; seed++) {
+      MazeWorld w = this.world(13, 9, seed, 100, 10);
+      same = same && Arrays.equals(keep.passages.get(seed), w.grid.passages)
+          && Arrays.equals(keep.paths.get(seed), new Solver().solve(w.grid, new BfsAdd(), 0,
+              w.grid.cells() - 1).path);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(bulk.metrics.get("bulk.mazes"), 40L);
+    t.checkExpect(bulk.metrics.get("bulk.runs"), 1L);
+  }
+
+  // tests that MazeBulk makes the same mazes however many workers it splits them over
+  void testThreads(Tester t) {
+    // more seeds than one batch, split across different numbers of workers
+    Keep one = new Keep();
+    Keep many = new Keep();
+    new MazeBulk(8, 8, 100, 100, 1).run(0, 1000, one);
+    new MazeBulk(8, 8, 100, 100, 4).run(0, 1000, many);
+    t.checkExpect(many.passages.size(), 1000);
+    boolean same = true;
+    for (long seed = 0; seed < 1000; seed++) {
+      same = same && Arrays.equals(one.passages.get(seed), many.passages.get(seed))
+          && one.paths.get(seed)[one.paths.get(seed).length - 1] == 63;
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(new MazeBulk(8, 8, 100, 100, 2).run(0, 0, one), 0L);
+  }
+
+  // tests that a BulkWorker reuses its grid and arrays from one maze to the next
+  void testWorkerReuse(Tester t) {
+    BulkWorker worker = new BulkWorker(10, 10, 100, 100);
+    Keep keep = new Keep();
+    worker.make(1, keep);
+    MazeGrid grid = worker.grid;
+    int[] order = worker.tree.order;
+    worker.make(2, keep);
+    t.checkExpect(worker.grid == grid && worker.tree.order == order, true);
+    t.checkExpect(worker.grid.opened, 99);
+    t.checkExpect(worker.tree.sets.unions, 99L);
+    t.checkExpect(keep.passages.get(2L), this.world(10, 10, 2, 100, 100).grid.passages);
+    t.checkExpect(worker.made, 2L);
+  }
+
+  // tests that a sink failing stops the run and its exception reaches the caller
+  void testSinkFails(Tester t) {
+    AtomicLong seen = new AtomicLong();
+    MazeSink failing = (seed, grid, solved) -> {
+      if (seen.incrementAndGet() == 300) {
+        throw new IllegalStateException("Sink is full");
+      }
+    };
+    String message = "";
+    try {
+      new MazeBulk(6, 6, 100, 100, 2).run(0, 100000, failing);
+    }
+    catch (IllegalStateException e) {
+      message = e.getMessage();
+    }
+    t.checkExpect(message, "Sink is full");
+    t.checkExpect(seen.get() < 100000, true);
+  }
+
+  // tests that BulkFile writes each maze and its path so they read back the same
+  void testBulkFile(Tester t) throws IOException {
+    Path file = Files.createTempFile("mazes", ".bin");
+    file.toFile().deleteOnExit();
+    BulkFile sink = new BulkFile(file, 10, 100);
+    new MazeBulk(11, 7, 10, 100, 2).run(90, 30, sink);
+    sink.close();
+    t.checkExpect(sink.records, 30L);
+    MazeFile files = new MazeFile();
+    ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+    int mazeSize = (int) files.sizeOf(new MazeGrid(11, 7));
+    boolean same = true;
+    long seeds = 0;
+    while (in.hasRemaining()) {
+      MazeWorld read = files.read(in.slice().order(ByteOrder.LITTLE_ENDIAN), mazeSize);
+      in.position(in.position() + mazeSize);
+      int[] path = files.readPath(in, 11);
+      MazeWorld w = this.world(11, 7, read.seed, 10, 100);
+      same = same && read.hScale == 10 && read.vScale == 100
+          && Arrays.equals(read.grid.passages, w.grid.passages)
+          && Arrays.equals(path, new Solver().solve(w.grid, new BfsAdd(), 0, 76).path);
+      seeds += read.seed;
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(seeds, (90L + 119) * 30 / 2);
+  }
+
+  // tests that MazeBulk refuses bad sizes, scales and thread counts
+  void testInvalid(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException("Invalid board size"),
+        "MazeBulk", 1, 5, 100, 100, 1);
+    t.checkConstructorException(new IllegalArgumentException("Invalid scales"),
+        "MazeBulk", 5, 5, 0, 100, 1);
+    t.checkConstructorException(new IllegalArgumentException("Invalid thread count"),
+        "MazeBulk", 5, 5, 100, 100, 0);
+  }
+}
@@ -0,0 +1,354 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import tester.*;
+
+// represents the binary file a maze is saved in: a 40 byte little-endian header of
+// magic, version, width, height, hScale, vScale, seed, opened walls and a reserved
+// int, then the grid's passage bits as longs, bit 2 * cell open for the right wall
+// and bit 2 * cell + 1 for the down wall
+class MazeFile {
+  static final int MAGIC = 0x4D415A45; // "MAZE"
+  static final int VERSION = 1;
+  static final int HEADER = 40;
+  // the most cells a maze in a file can have, so that its edge ids, up to
+  // cell * 2 + 1, fit in the ints MazeGrid indexes them by
+  static final long MAX_CELLS = 1L << 30;
+
+  // EFFECT: writes the maze of the world to the file, replacing it
+  void save(MazeWorld world, Path file) throws IOException {
+    MazeGrid grid = world.grid;
+    long size = this.sizeOf(grid);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      this.put(out, grid, world.hScale, world.vScale, world.seed);
+      out.force();
+    }
+  }
+
+  // produces the number of bytes the given grid takes in a maze file
+  long sizeOf(MazeGrid grid) {
+    return HEADER + grid.words() * 8L;
+  }
+
+  // EFFECT: puts the header and the passage bits of the maze into the buffer, which
+  // must have room for them, leaving it positioned after them
+  void put(ByteBuffer out, MazeGrid grid, int hScale, int vScale, long seed) {
+    out.order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(MAGIC).putInt(VERSION).putInt(grid.width).putInt(grid.height)
+        .putInt(hScale).putInt(vScale).putLong(seed).putInt(grid.opened).putInt(0);
+    grid.putPassages(out.asLongBuffer());
+    out.position(out.position() + grid.words() * 8);
+  }
+
+  // produces the number of bytes the record of the given path takes
+  int pathSize(int[] path) {
+    return 12 + (Math.max(0, path.length - 1) * 2 + 63) / 64 * 8;
+  }
+
+  // EFFECT: puts a record of the path into the buffer, which must have room for it:
+  // the cells expanded finding it, its start cell (-1 if there is no path) and its
+  // steps as ints, then each step's MazeGrid direction packed 2 bits at a time into
+  // longs; leaves the buffer positioned after it
+  void putPath(ByteBuffer out, int expanded, int[] path) {
+    int steps = Math.max(0, path.length - 1);
+    out.order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(expanded).putInt(path.length > 0 ? path[0] : -1).putInt(steps);
+    long word = 0;
+    for (int i = 0; i < steps; i++) {
+      word |= (long) MazeGrid.directionOf(path[i], path[i + 1]) << (i * 2);
+      if (i % 32 == 31) {
+        out.putLong(word);
+        word = 0;
+      }
+    }
+    if (steps % 32 != 0) {
+      out.putLong(word);
+    }
+  }
+
+  // produces the path of the record in the buffer on a maze of the given width,
+  // leaving the buffer positioned after it
+  int[] readPath(ByteBuffer in, int width) {
+    in.order(ByteOrder.LITTLE_ENDIAN);
+    in.getInt();
+    int start = in.getInt();
+    int steps = in.getInt();
+    if (start < 0) {
+      return new int[0];
+    }
+    int[] path = new int[steps + 1];
+    path[0] = start;
+    int[] moves = {-1, -width, 1, width};
+    long word = 0;
+    for (int i = 0; i < steps; i++) {
+      if (i % 32 == 0) {
+        word = in.getLong();
+      }
+      path[i + 1] = path[i] + moves[(int) (word >>> (i * 2)) & 3];
+    }
+    return path;
+  }
+
+  // EFFECT: writes the maze the rows make to the file as they are made, replacing it,
+  // holding one row and one buffer of bits in memory however tall the maze is; the
+  // seed is recorded as the maze's seed and the scales as even
+  void write(EllerRows rows, long seed, Path file) throws IOException {
+    if ((long) rows.width * rows.height > MAX_CELLS) {
+      throw new IllegalArgumentException("Invalid board size");
+    }
+    int width = rows.width;
+    int bitsPerRow = width * 2;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer out = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+      out.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(rows.height).putInt(100)
+          .putInt(100).putLong(seed).putInt((int) ((long) width * rows.height - 1)).putInt(0);
+      // bits of the next long not yet full, and how many of them are filled
+      long pending = 0;
+      int filled = 0;
+      while (rows.hasNext()) {
+        long[] bits = rows.next();
+        for (int word = 0; word * 64 < bitsPerRow; word++) {
+          int count = Math.min(64, bitsPerRow - word * 64);
+          long value = count == 64 ? bits[word] : bits[word] & ((1L << count) - 1);
+          pending |= value << filled;
+          if (filled + count >= 64) {
+            if (out.remaining() < 8) {
+              this.drain(out, channel);
+            }
+            out.putLong(pending);
+            pending = filled == 0 ? 0 : value >>> (64 - filled);
+            filled += count - 64;
+          }
+          else {
+            filled += count;
+          }
+        }
+      }
+      if (filled > 0) {
+        if (out.remaining() < 8) {
+          this.drain(out, channel);
+        }
+        out.putLong(pending);
+      }
+      this.drain(out, channel);
+    }
+  }
+
+  // EFFECT: writes everything put in the buffer to the channel and empties it
+  void drain(ByteBuffer out, FileChannel channel) throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  // produces a world showing the maze saved in the file without reading it all: its
+  // walls are read a page at a time as they are asked about, keeping at most maxPages
+  // pages of pageLongs longs, and it is drawn through a camera following the player
+  MazeWorld page(Path file, int pageLongs, int maxPages) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      ByteBuffer in = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+      int read = 0;
+      while (read >= 0 && in.hasRemaining()) {
+        read = channel.read(in);
+      }
+      in.flip();
+      if (in.remaining() < HEADER || in.getInt() != MAGIC) {
+        throw new IOException("Not a maze file");
+      }
+      if (in.getInt() != VERSION) {
+        throw new IOException("Unsupported maze file version");
+      }
+      int width = in.getInt();
+      int height = in.getInt();
+      int hScale = in.getInt();
+      int vScale = in.getInt();
+      long seed = in.getLong();
+      int opened = in.getInt();
+      this.checkSize(width, height, channel.size());
+      if ((long) width * height > MAX_CELLS) {
+        throw new IOException("Maze too large to page");
+      }
+      MazeWorld world = new MazeWorld(new PagedGrid(width, height, opened, channel, pageLongs,
+          maxPages), seed);
+      world.hScale = hScale;
+      world.vScale = vScale;
+      world.renderer = new ViewportRenderer(Math.min(width * world.nodeSize, 800),
+          Math.min(height * world.nodeSize, 800), 1);
+      return world;
+    }
+    catch (IOException | RuntimeException | Error e) {
+      // the world never got the channel, so nothing else will close it
+      channel.close();
+      throw e;
+    }
+  }
+
+  // EFFECT: throws if the header's board is smaller than a maze can be, or if a file
+  // of the given size does not hold exactly the passage bits of that board
+  void checkSize(int width, int height, long size) throws IOException {
+    if (width < 2 || height < 2) {
+      throw new IOException("Invalid maze size");
+    }
+    if (size != HEADER + ((long) width * height * 2 + 63) / 64 * 8) {
+      throw new IOException("Truncated maze file");
+    }
+  }
+
+  // produces a world showing the maze saved in the file, mapped into memory and
+  // copied into a grid on the heap in one bulk move, without generating it again;
+  // page serves the walls from the file instead, for mazes too big to copy
+  MazeWorld load(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER) {
+        throw new IOException("Not a maze file");
+      }
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return this.read(in, channel.size());
+    }
+  }
+
+  // produces a world showing the maze in the buffer, which holds size bytes in all,
+  // copying its passage bits into the grid in one bulk move
+  MazeWorld read(ByteBuffer in, long size) throws IOException {
+    if (size < HEADER) {
+      throw new IOException("Not a maze file");
+    }
+    in.order(ByteOrder.LITTLE_ENDIAN);
+    if (in.getInt() != MAGIC) {
+      throw new IOException("Not a maze file");
+    }
+    if (in.getInt() != VERSION) {
+      throw new IOException("Unsupported maze file version");
+    }
+    int width = in.getInt();
+    int height = in.getInt();
+    int hScale = in.getInt();
+    int vScale = in.getInt();
+    long seed = in.getLong();
+    int opened = in.getInt();
+    in.getInt();
+    this.checkSize(width, height, size);
+    if ((long) width * height > MAX_CELLS) {
+      throw new IOException("Maze too large to load");
+    }
+    long[] passages = new long[(int) ((size - HEADER) / 8)];
+    LongBuffer bits = in.asLongBuffer();
+    bits.get(passages);
+    MazeWorld world = new MazeWorld(new MazeGrid(width, height, passages, opened), seed);
+    world.hScale = hScale;
+    world.vScale = vScale;
+    return world;
+  }
+}
+
+// represents examples of saving and loading mazes
+class ExamplesMazeFile {
+  // produces a new empty file to save into
+  Path temp() {
+    try {
+      Path file = Files.createTempFile("maze", ".bin");
+      file.toFile().deleteOnExit();
+      return file;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // tests that a saved maze loads back the same without generating it again
+  void testRoundTrip(Tester t) throws IOException {
+    MazeFile files = new MazeFile();
+    MazeWorld w = new MazeWorld(37, 21, 11);
+    w.onKeyEvent("h");
+    Path file = this.temp();
+    files.save(w, file);
+    t.checkExpect(Files.size(file), MazeFile.HEADER + w.grid.passages.length * 8L);
+    MazeWorld back = files.load(file);
+    t.checkExpect(back.grid.passages, w.grid.passages);
+    t.checkExpect(back.grid.opened, 37 * 21 - 1);
+    t.checkExpect(back.treeDone(), true);
+    t.checkExpect(back.seed, w.seed);
+    t.checkExpect(back.width, 37);
+    t.checkExpect(back.vScale, 10);
+    // the saved maze is the one its seed and scales make
+    MazeWorld again = new MazeWorld(37, 21, back.seed);
+    again.hScale = back.hScale;
+    again.vScale = back.vScale;
+    again.grid = again.makeGrid();
+    again.weights = again.initEdges();
+    again.krusAlg();
+    t.checkExpect(again.grid.passages, back.grid.passages);
+    // loading skips generating, so no spanning tree is built
+    t.checkExpect(back.metrics.get("krusAlg.runs"), 0L);
+    back.animate = false;
+    back.onKeyEvent("b");
+    t.checkExpect(back.path.size() > 0, true);
+  }
+
+  // tests that files that are not whole maze files are refused when loaded or paged
+  void testBadFiles(Tester t) throws IOException {
+    MazeFile files = new MazeFile();
+    Path file = this.temp();
+    Files.write(file, new byte[] {1, 2, 3});
+    t.checkException(new IOException("Not a maze file"), files, "load", file);
+    Files.write(file, new byte[MazeFile.HEADER]);
+    t.checkException(new IOException("Not a maze file"), files, "load", file);
+    ByteBuffer header = ByteBuffer.allocate(MazeFile.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MazeFile.MAGIC).putInt(2);
+    Files.write(file, header.array());
+    t.checkException(new IOException("Unsupported maze file version"), files, "load", file);
+    header.putInt(4, MazeFile.VERSION).putInt(8, 10).putInt(12, 10);
+    Files.write(file, header.array());
+    t.checkException(new IOException("Truncated maze file"), files, "load", file);
+    t.checkException(new IOException("Truncated maze file"), files, "page", file, 16, 2);
+    header.putInt(8, 1);
+    Files.write(file, header.array());
+    t.checkException(new IOException("Invalid maze size"), files, "load", file);
+    t.checkException(new IOException("Invalid maze size"), files, "page", file, 16, 2);
+    header.putInt(8, -5);
+    Files.write(file, header.array());
+    t.checkException(new IOException("Invalid maze size"), files, "load", file);
+    // a header claiming more cells than an array can hold is caught by its size
+    // before anything is allocated for it
+    header.putInt(8, Integer.MAX_VALUE).putInt(12, Integer.MAX_VALUE);
+    Files.write(file, header.array());
+    t.checkException(new IOException("Truncated maze file"), files, "load", file);
+    ByteBuffer huge = ByteBuffer.allocate(MazeFile.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    huge.put(header.array()).flip();
+    long claimed = MazeFile.HEADER + ((long) Integer.MAX_VALUE * Integer.MAX_VALUE * 2 + 63)
+        / 64 * 8;
+    t.checkException(new IOException("Maze too large to load"), files, "read", huge, claimed);
+  }
+
+  // tests that a path record is sized, written and read back the same
+  void testPathRecord(Tester t) {
+    MazeFile files = new MazeFile();
+    MazeWorld w = new MazeWorld(40, 30, 3);
+    int[] path = new Solver().solve(w.grid, new BfsAdd(), 0, 1199).path;
+    ByteBuffer out = ByteBuffer.allocate(files.pathSize(path) + files.pathSize(new int[0]));
+    files.putPath(out, 77, path);
+    t.checkExpect(out.position(), files.pathSize(path));
+    files.putPath(out, 5, new int[0]);
+    t.checkExpect(out.hasRemaining(), false);
+    out.flip();
+    t.checkExpect(out.getInt(0), 77);
+    t.checkExpect(files.readPath(out, 40), path);
+    t.checkExpect(files.readPath(out, 40), new int[0]);
+    t.checkExpect(files.pathSize(new int[] {4}), 12);
+    t.checkExpect(files.pathSize(new int[33]), 20);
+    t.checkExpect(files.pathSize(new int[34]), 28);
+  }
+}
@@ -0,0 +1,267 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeNotFoundException;
+import javax.management.AttributeList;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import tester.*;
+
+// represents a registry of named counts and timings for a maze world, kept as longs
+// in the order they were first recorded and readable over JMX once registered, e.g.
+//   world.metrics.register("maze:type=Metrics");
+// a phase timed under the name "krusAlg" records krusAlg.ns and krusAlg.bytes for its
+// last run, and krusAlg.runs and krusAlg.totalNs over every run; every read and
+// write holds the registry's lock, since JMX reads and resets it from its own threads
+class MazeMetrics implements DynamicMBean {
+  LinkedHashMap<String, Long> values = new LinkedHashMap<String, Long>();
+  boolean log = false;
+
+  // produces the value recorded under the name, 0 if there is none
+  synchronized long get(String name) {
+    Long value = this.values.get(name);
+    return value == null ? 0 : value;
+  }
+
+  // EFFECT: records the value under the name, replacing the last one
+  synchronized void set(String name, long value) {
+    this.values.put(name, value);
+  }
+
+  // EFFECT: adds the amount to the value recorded under the name
+  synchronized void add(String name, long amount) {
+    this.values.put(name, this.get(name) + amount);
+  }
+
+  // EFFECT: runs the phase, recording its wall time and the bytes this thread
+  // allocated during it, which leaves out work done on other threads
+  void time(String phase, Runnable work) {
+    long allocated = this.allocatedBytes();
+    long start = System.nanoTime();
+    work.run();
+    long nanos = System.nanoTime() - start;
+    this.set(phase + ".ns", nanos);
+    this.set(phase + ".bytes", this.allocatedBytes() - allocated);
+    this.add(phase + ".runs", 1);
+    this.add(phase + ".totalNs", nanos);
+  }
+
+  // produces one line listing every value whose name starts with one of the prefixes
+  synchronized String summary(String... prefixes) {
+    StringBuilder line = new StringBuilder();
+    for (Map.Entry<String, Long> entry : this.values.entrySet()) {
+      for (String prefix : prefixes) {
+        if (entry.getKey().startsWith(prefix)) {
+          line.append(line.length() == 0 ? "" : " ").append(entry.getKey()).append('=')
+              .append(entry.getValue());
+          break;
+        }
+      }
+    }
+    return line.toString();
+  }
+
+  // EFFECT: prints the summary of the prefixes if logging is on
+  void logSummary(String... prefixes) {
+    if (this.log) {
+      System.out.println(this.summary(prefixes));
+    }
+  }
+
+  // EFFECT: registers this registry with the platform MBean server under the name
+  void register(String name) throws Exception {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+  }
+
+  // produces the bytes allocated by this thread so far, or 0 where the JVM cannot tell
+  long allocatedBytes() {
+    return Math.max(0, ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes());
+  }
+
+  // produces the value recorded under the attribute's name
+  public synchronized Object getAttribute(String name) throws AttributeNotFoundException {
+    Long value = this.values.get(name);
+    if (value == null) {
+      throw new AttributeNotFoundException(name);
+    }
+    return value;
+  }
+
+  // produces the values recorded under those of the names that have one
+  public synchronized AttributeList getAttributes(String[] names) {
+    AttributeList list = new AttributeList();
+    for (String name : names) {
+      Long value = this.values.get(name);
+      if (value != null) {
+        list.add(new Attribute(name, value));
+      }
+    }
+    return list;
+  }
+
+  // values are only recorded by the maze, so setting one does nothing
+  public void setAttribute(Attribute attribute) {
+  }
+
+  // values are only recorded by the maze, so setting them does nothing
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  // runs the reset operation, the only one there is
+  public synchronized Object invoke(String action, Object[] params, String[] signature)
+      throws ReflectionException {
+    if (!action.equals("reset")) {
+      throw new ReflectionException(new NoSuchMethodException(action), "Unknown operation");
+    }
+    this.values.clear();
+    return null;
+  }
+
+  // produces a description with one read-only long attribute per recorded value
+  public synchronized MBeanInfo getMBeanInfo() {
+    ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+    for (String name : this.values.keySet()) {
+      attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+    }
+    MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Clears every value",
+        null, "void", MBeanOperationInfo.ACTION);
+    return new MBeanInfo(MazeMetrics.class.getName(), "Maze generation and search metrics",
+        attributes.toArray(new MBeanAttributeInfo[0]), null,
+        new MBeanOperationInfo[] {reset}, null);
+  }
+}
+
+// represents examples of recording and reading maze metrics
+class ExamplesMazeMetrics {
+  // tests get, set, add and summary
+  void testRecord(Tester t) {
+    MazeMetrics metrics = new MazeMetrics();
+    t.checkExpect(metrics.get("a"), 0L);
+    metrics.add("a", 2);
+    metrics.add("a", 3);
+    metrics.set("b", 7);
+    metrics.set("b", 4);
+    t.checkExpect(metrics.get("a"), 5L);
+    t.checkExpect(metrics.get("b"), 4L);
+    t.checkExpect(metrics.summary("a", "b"), "a=5 b=4");
+    t.checkExpect(metrics.summary("b"), "b=4");
+    t.checkExpect(metrics.summary("c"), "");
+  }
+
+  // tests time method
+  void testTime(Tester t) {
+    MazeMetrics metrics = new MazeMetrics();
+    metrics.time("grow", () -> new long[1 << 16].clone());
+    metrics.time("grow", () -> { });
+    t.checkExpect(metrics.get("grow.runs"), 2L);
+    t.checkExpect(metrics.get("grow.totalNs") >= metrics.get("grow.ns"), true);
+    metrics.time("grow", () -> new long[1 << 16].clone());
+    t.checkExpect(metrics.get("grow.bytes") >= 8L << 16, true);
+  }
+
+  // tests the metrics a world records as it makes and solves a maze
+  void testMaze(Tester t) {
+    MazeWorld w = new MazeWorld(40, 30, 5);
+    t.checkExpect(w.metrics.get("krusAlg.runs"), 1L);
+    t.checkExpect(w.metrics.get("krusAlg.unions"), 40L * 30 - 1);
+    t.checkExpect(w.metrics.get("krusAlg.finds") >= 2 * (40L * 30 - 1), true);
+    t.checkExpect(w.metrics.get("krusAlg.maxFindPath") >= 1, true);
+    t.checkExpect(w.metrics.get("initEdges.bytes") > 0, true);
+    w.onKeyEvent("r");
+    t.checkExpect(w.metrics.get("makeGrid.runs"), 2L);
+    w.onKeyEvent("g");
+    t.checkExpect(w.metrics.get("krusAlg.rounds") > 0, true);
+    w.animate = false;
+    w.onKeyEvent("b");
+    t.checkExpect(w.metrics.get("solve.runs"), 1L);
+    t.checkExpect(w.metrics.get("solve.BfsAdd.expanded"), (long) w.result.expanded.length);
+    t.checkExpect(w.metrics.get("solve.path"), (long) w.result.path.length);
+    w.makeScene();
+    w.makeScene();
+    t.checkExpect(w.metrics.get("makeScene.runs"), 2L);
+  }
+
+  // tests reading and resetting the metrics over JMX
+  void testMBean(Tester t) throws AttributeNotFoundException {
+    MazeMetrics metrics = new MazeMetrics();
+    metrics.set("krusAlg.ns", 12);
+    t.checkExpect(metrics.getMBeanInfo().getAttributes().length, 1);
+    t.checkExpect(metrics.getMBeanInfo().getAttributes()[0].getName(), "krusAlg.ns");
+    t.checkExpect(metrics.getAttribute("krusAlg.ns"), 12L);
+    t.checkExpect(metrics.getAttributes(new String[] {"krusAlg.ns"}).asList().get(0).getValue(),
+        12L);
+    t.checkException(new AttributeNotFoundException("solve.ns"), metrics, "getAttribute",
+        "solve.ns");
+    t.checkExpect(metrics.getAttributes(new String[] {"solve.ns", "krusAlg.ns"}).size(), 1);
+    try {
+      metrics.register("maze:type=Metrics,name=examples");
+      t.checkExpect(ManagementFactory.getPlatformMBeanServer().getAttribute(
+          new ObjectName("maze:type=Metrics,name=examples"), "krusAlg.ns"), 12L);
+      ManagementFactory.getPlatformMBeanServer().invoke(
+          new ObjectName("maze:type=Metrics,name=examples"), "reset", null, null);
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+          new ObjectName("maze:type=Metrics,name=examples"));
+    }
+    catch (Exception e) {
+      t.checkExpect(e, null, "JMX access failed");
+    }
+    t.checkExpect(metrics.values.isEmpty(), true);
+  }
+
+  // tests that values added on many threads while JMX reads and resets the registry
+  // are neither lost nor break the reads; each writer adds to its own count and to
+  // "all" together under the registry's lock, so after a reset part way through the
+  // counts left add up to "all", which holds exactly the adds made after the reset
+  void testConcurrentAccess(Tester t) throws InterruptedException {
+    MazeMetrics metrics = new MazeMetrics();
+    Thread[] writers = new Thread[4];
+    for (int i = 0; i < writers.length; i++) {
+      String name = "thread" + i;
+      writers[i] = new Thread(() -> {
+        for (int n = 0; n < 20000; n++) {
+          synchronized (metrics) {
+            metrics.add(name, 1);
+            metrics.add("all", 1);
+          }
+        }
+      });
+      writers[i].start();
+    }
+    boolean read = true;
+    for (int n = 0; n < 200; n++) {
+      read = read && metrics.getMBeanInfo().getAttributes().length <= writers.length + 1;
+      metrics.summary("thread");
+    }
+    long before = 0;
+    int left = -1;
+    try {
+      synchronized (metrics) {
+        before = metrics.get("all");
+        metrics.invoke("reset", null, null);
+        left = metrics.getMBeanInfo().getAttributes().length;
+      }
+    }
+    catch (ReflectionException e) {
+      t.checkExpect(e, null, "reset failed");
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    long sum = 0;
+    for (int i = 0; i < writers.length; i++) {
+      sum += metrics.get("thread" + i);
+    }
+    t.checkExpect(read, true);
+    t.checkExpect(left, 0);
+    t.checkExpect(metrics.get("all"), 80000L - before);
+    t.checkExpect(sum, 80000L - before);
+  }
+}
@@ -0,0 +1,172 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import tester.*;
+
+// represents a maze made ahead of time, with the seed it was made from
+class ReadyMaze {
+  MazeGrid grid;
+  long seed;
+
+  ReadyMaze(MazeGrid grid, long seed) {
+    this.grid = grid;
+    this.seed = seed;
+  }
+}
+
+// represents mazes for a world made ahead on background threads, a queue of depth of
+// them for each of the normal, horizontal and vertical scales; each queue draws its
+// seeds from its own split of the world's seeds in the order it asks for mazes, and
+// hands them out in that same order, so a world makes the same mazes however many
+// threads make them and however fast
+class MazePool {
+  // the hScale and vScale of each queue: normal, mostly horizontal, mostly vertical
+  static final int[][] SCALES = {{100, 100}, {100, 10}, {10, 100}};
+
+  MazeWorld world;
+  int depth;
+  ExecutorService threads;
+  SplittableRandom[] seeds;
+  ArrayList<ArrayDeque<CompletableFuture<ReadyMaze>>> queues;
+
+  MazePool(MazeWorld world, int depth, int threads) {
+    if (depth < 1 || threads < 1) {
+      throw new IllegalArgumentException("Invalid pool size");
+    }
+    this.world = world;
+    this.depth = depth;
+    this.threads = Executors.newFixedThreadPool(threads, work -> {
+      Thread thread = new Thread(work, "maze-pool");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.seeds = new SplittableRandom[SCALES.length];
+    this.queues = new ArrayList<ArrayDeque<CompletableFuture<ReadyMaze>>>();
+    for (int i = 0; i < SCALES.length; i++) {
+      this.seeds[i] = world.seeds.split();
+      this.queues.add(new ArrayDeque<CompletableFuture<ReadyMaze>>());
+    }
+    for (int i = 0; i < SCALES.length; i++) {
+      for (int j = 0; j < depth; j++) {
+        this.refill(i);
+      }
+    }
+  }
+
+  // produces the queue for the given scales, or -1 if the pool does not make them
+  int queueOf(int hScale, int vScale) {
+    for (int i = 0; i < SCALES.length; i++) {
+      if (SCALES[i][0] == hScale && SCALES[i][1] == vScale) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // EFFECT: starts making one more maze for the given queue in the background
+  void refill(int queue) {
+    long seed = this.seeds[queue].nextLong();
+    int hScale = SCALES[queue][0];
+    int vScale = SCALES[queue][1];
+    this.queues.get(queue).addLast(CompletableFuture.supplyAsync(() -> {
+      MazeGrid grid = new MazeGrid(this.world.width, this.world.height);
+      new KruskalTree().span(grid, grid.weights(seed, hScale, vScale), Math.max(hScale, vScale));
+      return new ReadyMaze(grid, seed);
+    }, this.threads));
+  }
+
+  // EFFECT: takes the oldest maze of the queue for the given scales and starts making
+  // another in its place, recording whether it was ready in the world's metrics
+  // produces null if the pool does not make mazes with these scales
+  ReadyMaze take(int hScale, int vScale) {
+    int queue = this.queueOf(hScale, vScale);
+    if (queue < 0) {
+      return null;
+    }
+    CompletableFuture<ReadyMaze> next = this.queues.get(queue).removeFirst();
+    this.world.metrics.add(next.isDone() ? "pool.ready" : "pool.waited", 1);
+    this.refill(queue);
+    return next.join();
+  }
+
+  // EFFECT: stops the background threads once the mazes started are made
+  void shutdown() {
+    this.threads.shutdown();
+  }
+}
+
+// represents examples of making mazes ahead in a pool
+class ExamplesMazePool {
+  // EFFECT: waits for every maze the pool has started
+  void settle(MazePool pool) {
+    for (ArrayDeque<CompletableFuture<ReadyMaze>> queue : pool.queues) {
+      for (CompletableFuture<ReadyMaze> maze : queue) {
+        maze.join();
+      }
+    }
+  }
+
+  // tests that newMaze takes a ready maze from the pool when its scales have one
+  void testTake(Tester t) {
+    MazeWorld w = new MazeWorld(30, 20, 6);
+    w.pool = new MazePool(w, 3, 2);
+    t.checkExpect(w.pool.queues.get(0).size(), 3);
+    this.settle(w.pool);
+    CompletableFuture<ReadyMaze> head = w.pool.queues.get(1).peekFirst();
+    w.onKeyEvent("h");
+    t.checkExpect(w.grid, head.join().grid);
+    t.checkExpect(w.seed, head.join().seed);
+    t.checkExpect(w.pool.queues.get(1).size(), 3);
+    t.checkExpect(w.metrics.get("pool.ready"), 1L);
+    t.checkExpect(w.metrics.get("krusAlg.runs"), 1L);
+    t.checkExpect(w.treeDone(), true);
+    t.checkExpect(w.player, 0);
+    // the maze is the one newMaze would make from its seed and scales
+    MazeWorld same = new MazeWorld(30, 20, 0);
+    same.seed = w.seed;
+    same.hScale = 100;
+    same.vScale = 10;
+    same.generate();
+    t.checkExpect(same.grid.passages, w.grid.passages);
+    w.hScale = 50;
+    w.newMaze();
+    t.checkExpect(w.metrics.get("krusAlg.runs"), 2L);
+    w.pool.shutdown();
+    t.checkConstructorException(new IllegalArgumentException("Invalid pool size"),
+        "MazePool", w, 0, 1);
+  }
+
+  // tests that pools of any size and depth give the same mazes for the same keys
+  void testSameMazes(Tester t) {
+    MazeWorld one = new MazeWorld(25, 25, 9);
+    MazeWorld many = new MazeWorld(25, 25, 9);
+    one.pool = new MazePool(one, 1, 1);
+    many.pool = new MazePool(many, 4, 3);
+    boolean same = true;
+    for (String k : new String[] {"r", "h", "h", "v", "n", "r", "v", "r"}) {
+      one.onKeyEvent(k);
+      many.onKeyEvent(k);
+      same = same && one.seed == many.seed && one.grid.opened == 25 * 25 - 1
+          && Arrays.equals(one.grid.passages, many.grid.passages);
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(one.metrics.get("pool.ready") + one.metrics.get("pool.waited"), 8L);
+    one.pool.shutdown();
+    many.pool.shutdown();
+  }
+
+  // tests that the q key starts a pool and stops it again
+  void testToggle(Tester t) {
+    MazeWorld w = new MazeWorld(12, 12, 2);
+    w.onKeyEvent("q");
+    t.checkExpect(w.pool.depth, 2);
+    MazePool pool = w.pool;
+    w.onKeyEvent("q");
+    t.checkExpect(w.pool, null);
+    t.checkExpect(pool.threads.isShutdown(), true);
+  }
+}
@@ -0,0 +1,828 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import javalib.impworld.*;
+import tester.*;
+
+// represents a recording of a maze world's session, written as it is played, e.g.
+//   world.log = new ReplayLog(world);
+// the log is a 16 byte little-endian header of magic, version, width and height, then
+// one event after another; each event starts with a byte holding its type in the low
+// 3 bits and the ticks since the event before in the high 5, where 31 means the
+// ticks less 31 follow as a varint, and then by type:
+//   MOVE    the direction the player stepped, one byte
+//   EXPAND  the cell the search expanded, as a zigzag varint of its difference from
+//           the cell expanded before it in the same search
+//   KEY     the index in KEYS of the key pressed, one byte
+//   MAZE    a new maze: its seed as 8 bytes, then hScale, vScale and the player's cell
+//           as varints
+//   PATH    a solution shown: its length as a varint, then its first cell as a varint
+//           and its steps as directions packed 4 to a byte
+//   CLEAR   the search and the solution shown were cleared
+// so a search replayed one cell a tick costs 2 or 3 bytes a cell
+class ReplayLog {
+  static final int MAGIC = 0x4D5A4C47; // "MZLG"
+  static final int VERSION = 1;
+  static final int HEADER = 16;
+  static final int MOVE = 0;
+  static final int EXPAND = 1;
+  static final int KEY = 2;
+  static final int MAZE = 3;
+  static final int PATH = 4;
+  static final int CLEAR = 5;
+  // the keys recorded by index; the arrow keys are recorded by the moves they make
+  static final String[] KEYS = {"r", "n", "b", "d", "a", "m", "p", "q", "f", "i", "t", "s",
+      "h", "v", "g", "o", "c", "=", "+", "-"};
+
+  int width;
+  int height;
+  byte[] bytes;
+  int size;
+  long tick;
+  long lastTick;
+  int lastCell;
+  long events;
+
+  // constructor that starts the log at the world's current maze and player
+  ReplayLog(MazeWorld world) {
+    this.width = world.width;
+    this.height = world.height;
+    this.bytes = new byte[1 << 12];
+    ByteBuffer.wrap(this.bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(MAGIC).putInt(VERSION)
+        .putInt(this.width).putInt(this.height);
+    this.size = HEADER;
+    this.maze(world.seed, world.hScale, world.vScale, world.player);
+  }
+
+  // EFFECT: counts one more tick of the world
+  void tick() {
+    this.tick++;
+  }
+
+  // EFFECT: records the player stepping in the given direction
+  void move(int dir) {
+    this.begin(MOVE);
+    this.put(dir);
+  }
+
+  // EFFECT: records the search expanding the cell
+  void expand(int cell) {
+    this.begin(EXPAND);
+    int delta = cell - this.lastCell;
+    this.putVar(((delta << 1) ^ (delta >> 31)) & 0xFFFFFFFFL);
+    this.lastCell = cell;
+  }
+
+  // EFFECT: records the key if it is one of KEYS
+  void key(String k) {
+    int index = Arrays.asList(KEYS).indexOf(k);
+    if (index >= 0) {
+      this.begin(KEY);
+      this.put(index);
+    }
+  }
+
+  // EFFECT: records a new maze made from the seed and scales, with the player on it
+  void maze(long seed, int hScale, int vScale, int player) {
+    this.begin(MAZE);
+    for (int i = 0; i < 8; i++) {
+      this.put((int) (seed >>> (i * 8)));
+    }
+    this.putVar(hScale);
+    this.putVar(vScale);
+    this.putVar(player);
+    this.lastCell = 0;
+  }
+
+  // EFFECT: records the solution shown
+  void path(int[] path) {
+    this.begin(PATH);
+    this.putVar(path.length);
+    if (path.length > 0) {
+      this.putVar(path[0]);
+      int packed = 0;
+      for (int i = 1; i < path.length; i++) {
+        packed |= MazeGrid.directionOf(path[i - 1], path[i]) << ((i - 1) % 4 * 2);
+        if ((i - 1) % 4 == 3) {
+          this.put(packed);
+          packed = 0;
+        }
+      }
+      if ((path.length - 1) % 4 != 0) {
+        this.put(packed);
+      }
+    }
+  }
+
+  // EFFECT: records the search and solution being cleared
+  void clear() {
+    this.begin(CLEAR);
+    this.lastCell = 0;
+  }
+
+  // EFFECT: starts an event of the given type at the current tick
+  void begin(int type) {
+    long delta = this.tick - this.lastTick;
+    this.lastTick = this.tick;
+    this.events++;
+    if (delta < 31) {
+      this.put(type | (int) delta << 3);
+    }
+    else {
+      this.put(type | 31 << 3);
+      this.putVar(delta - 31);
+    }
+  }
+
+  // EFFECT: appends the low byte of b, growing the log as needed
+  void put(int b) {
+    if (this.size == this.bytes.length) {
+      this.bytes = Arrays.copyOf(this.bytes, this.size * 2);
+    }
+    this.bytes[this.size++] = (byte) b;
+  }
+
+  // EFFECT: appends the value 7 bits a byte, low bits first, the high bit of each byte
+  // set while more follow
+  void putVar(long value) {
+    while ((value & ~0x7FL) != 0) {
+      this.put((int) (value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    this.put((int) value);
+  }
+
+  // produces the log recorded so far
+  byte[] toBytes() {
+    return Arrays.copyOf(this.bytes, this.size);
+  }
+
+  // EFFECT: writes the log recorded so far to the file, replacing it
+  void write(Path file) throws IOException {
+    Files.write(file, this.toBytes());
+  }
+}
+
+// represents a place in a replay log and the state of the session there: the events
+// and ticks read, the maze and player, the search shown, where the maze and the
+// solution shown start in the log, and how many moves and expansions were read in
+// all and since the maze and the search began, so the cells they name can be looked
+// up in the arrays MazeReplay fills as it first reads the log
+class ReplayCursor {
+  byte[] bytes;
+  int width;
+  int at = ReplayLog.HEADER;
+  long event;
+  long tick;
+  int player;
+  long seed;
+  int hScale;
+  int vScale;
+  int lastCell;
+  int expanded;
+  int expands; // the expansions read in all
+  int moves; // the moves read in all
+  int walked; // the moves read since the current maze began
+  int mazeAt = -1; // where the event of the current maze starts
+  int pathAt = -1; // where the length of the solution shown starts, -1 if none is shown
+  int key = -1;
+  boolean showPaths = true;
+  boolean heatmap = false;
+
+  ReplayCursor(byte[] bytes, int width) {
+    this.bytes = bytes;
+    this.width = width;
+  }
+
+  // produces a cursor at the same place in the same state
+  ReplayCursor copy() {
+    ReplayCursor copy = new ReplayCursor(this.bytes, this.width);
+    copy.at = this.at;
+    copy.event = this.event;
+    copy.tick = this.tick;
+    copy.player = this.player;
+    copy.seed = this.seed;
+    copy.hScale = this.hScale;
+    copy.vScale = this.vScale;
+    copy.lastCell = this.lastCell;
+    copy.expanded = this.expanded;
+    copy.expands = this.expands;
+    copy.moves = this.moves;
+    copy.walked = this.walked;
+    copy.mazeAt = this.mazeAt;
+    copy.pathAt = this.pathAt;
+    copy.key = this.key;
+    copy.showPaths = this.showPaths;
+    copy.heatmap = this.heatmap;
+    return copy;
+  }
+
+  // checks if there are events left to read
+  boolean hasNext() {
+    return this.at < this.bytes.length;
+  }
+
+  // produces the tick of the next event
+  long nextTick() {
+    int was = this.at;
+    long delta = this.tag() >>> 3;
+    this.at = was;
+    return this.tick + delta;
+  }
+
+  // EFFECT: reads the next event and brings the state up to date with it
+  // produces the event's type
+  int step() {
+    int start = this.at;
+    long tag = this.tag();
+    int type = (int) (tag & 7);
+    this.tick += tag >>> 3;
+    if (type == ReplayLog.MOVE) {
+      this.player += this.move(this.getByte());
+      this.moves++;
+      this.walked++;
+    }
+    else if (type == ReplayLog.EXPAND) {
+      long zigzag = this.getVar();
+      this.lastCell += (int) (zigzag >>> 1) ^ -(int) (zigzag & 1);
+      this.expanded++;
+      this.expands++;
+    }
+    else if (type == ReplayLog.KEY) {
+      this.key = this.getByte();
+      if (this.key >= ReplayLog.KEYS.length) {
+        throw new IllegalStateException("Bad replay key " + this.key);
+      }
+      String k = ReplayLog.KEYS[this.key];
+      this.showPaths = this.showPaths != k.equals("s");
+      this.heatmap = this.heatmap != k.equals("t");
+    }
+    else if (type == ReplayLog.MAZE) {
+      long seed = 0;
+      for (int i = 0; i < 8; i++) {
+        seed |= (long) this.getByte() << (i * 8);
+      }
+      this.seed = seed;
+      this.hScale = (int) this.getVar();
+      this.vScale = (int) this.getVar();
+      this.player = (int) this.getVar();
+      this.mazeAt = start;
+      this.walked = 0;
+      this.clearSearch();
+    }
+    else if (type == ReplayLog.PATH) {
+      this.pathAt = this.at;
+      int length = (int) this.getVar();
+      if (length > 0) {
+        this.getVar();
+        this.at += (length - 1 + 3) / 4;
+      }
+    }
+    else if (type == ReplayLog.CLEAR) {
+      this.clearSearch();
+    }
+    else {
+      throw new IllegalStateException("Bad replay event " + type);
+    }
+    this.event++;
+    return type;
+  }
+
+  // EFFECT: forgets the search and solution shown
+  void clearSearch() {
+    this.lastCell = 0;
+    this.expanded = 0;
+    this.pathAt = -1;
+  }
+
+  // produces the solution shown, or an empty path if there is none
+  int[] path() {
+    if (this.pathAt < 0) {
+      return new int[0];
+    }
+    int was = this.at;
+    this.at = this.pathAt;
+    int[] path = new int[(int) this.getVar()];
+    if (path.length > 0) {
+      path[0] = (int) this.getVar();
+      int packed = 0;
+      for (int i = 1; i < path.length; i++) {
+        if ((i - 1) % 4 == 0) {
+          packed = this.getByte();
+        }
+        path[i] = path[i - 1] + this.move(packed >>> ((i - 1) % 4 * 2) & 3);
+      }
+    }
+    this.at = was;
+    return path;
+  }
+
+  // produces the change in cell of a step in the given direction
+  int move(int dir) {
+    return dir == MazeGrid.LEFT ? -1 : dir == MazeGrid.RIGHT ? 1
+        : dir == MazeGrid.UP ? -this.width : this.width;
+  }
+
+  // produces the type and ticks of the event read, as type | ticks << 3
+  long tag() {
+    int tag = this.getByte();
+    long delta = tag >>> 3;
+    if (delta == 31) {
+      delta += this.getVar();
+    }
+    return (tag & 7) | delta << 3;
+  }
+
+  // produces the next byte read
+  int getByte() {
+    return this.bytes[this.at++] & 0xFF;
+  }
+
+  // produces the next varint read
+  long getVar() {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = this.getByte();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
+
+// represents playing back a replay log: reading it once keeps a copy of the cursor
+// every EVERY events, and every cell expanded and every cell the player stepped off
+// in order, so seeking to any tick or event searches those copies and reads on from
+// the last one before it, O(log n + EVERY) however long the log; a world showing the
+// place reached is built from the cursor and those arrays without reading the log
+// again, and played forward from there any number of ticks at a time
+class MazeReplay {
+  static final int EVERY = 1024;
+
+  byte[] bytes;
+  int width;
+  int height;
+  ArrayList<ReplayCursor> marks;
+  int[] expansions;
+  int[] walks;
+  ReplayCursor now;
+  long time;
+  long events;
+  long ticks;
+  MazeGrid grid;
+  long gridSeed;
+  long gridScales;
+
+  MazeReplay(byte[] bytes) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    if (bytes.length < ReplayLog.HEADER || in.getInt() != ReplayLog.MAGIC) {
+      throw new IOException("Not a replay log");
+    }
+    if (in.getInt() != ReplayLog.VERSION) {
+      throw new IOException("Unsupported replay log version");
+    }
+    this.bytes = bytes;
+    this.width = in.getInt();
+    this.height = in.getInt();
+    this.marks = new ArrayList<ReplayCursor>();
+    ReplayCursor scan = new ReplayCursor(bytes, this.width);
+    this.marks.add(scan.copy());
+    this.expansions = new int[1 << 10];
+    this.walks = new int[1 << 6];
+    try {
+      while (scan.hasNext()) {
+        int before = scan.player;
+        int type = scan.step();
+        if (type == ReplayLog.EXPAND) {
+          if (scan.expands > this.expansions.length) {
+            this.expansions = Arrays.copyOf(this.expansions, this.expansions.length * 2);
+          }
+          this.expansions[scan.expands - 1] = scan.lastCell;
+        }
+        else if (type == ReplayLog.MOVE) {
+          if (scan.moves > this.walks.length) {
+            this.walks = Arrays.copyOf(this.walks, this.walks.length * 2);
+          }
+          this.walks[scan.moves - 1] = before;
+        }
+        if (scan.event % EVERY == 0) {
+          this.marks.add(scan.copy());
+        }
+      }
+    }
+    catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated replay log");
+    }
+    catch (IllegalStateException e) {
+      throw new IOException("Invalid replay log");
+    }
+    this.events = scan.event;
+    this.ticks = scan.tick;
+    this.seek(0);
+  }
+
+  // produces the replay of the log in the file
+  static MazeReplay read(Path file) throws IOException {
+    return new MazeReplay(Files.readAllBytes(file));
+  }
+
+  // EFFECT: moves to just after the last event at or before the given tick, reading
+  // on from the current place when that is on the way
+  void seek(long tick) {
+    int lo = 0;
+    int hi = this.marks.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (this.marks.get(mid).tick <= tick) {
+        lo = mid;
+      }
+      else {
+        hi = mid - 1;
+      }
+    }
+    ReplayCursor mark = this.marks.get(lo);
+    if (this.now == null || this.now.event < mark.event || this.now.tick > tick) {
+      this.now = mark.copy();
+    }
+    while (this.now.hasNext() && this.now.nextTick() <= tick) {
+      this.now.step();
+    }
+    this.time = Math.max(0, tick);
+  }
+
+  // EFFECT: moves to just after the given number of events
+  void seekEvent(long event) {
+    event = Math.max(0, Math.min(event, this.events));
+    ReplayCursor mark = this.marks.get((int) (event / EVERY));
+    if (this.now.event < mark.event || this.now.event > event) {
+      this.now = mark.copy();
+    }
+    while (this.now.event < event) {
+      this.now.step();
+    }
+    this.time = this.now.tick;
+  }
+
+  // produces the maze the cursor is on, made again from its seed and scales unless
+  // it was the last one made
+  MazeGrid grid(ReplayCursor cursor) {
+    long scales = (long) cursor.hScale << 32 | cursor.vScale;
+    if (this.grid == null || this.gridSeed != cursor.seed || this.gridScales != scales) {
+      MazeGrid made = new MazeGrid(this.width, this.height);
+      new KruskalTree().span(made, made.weights(cursor.seed, cursor.hScale, cursor.vScale),
+          Math.max(cursor.hScale, cursor.vScale));
+      this.grid = made;
+      this.gridSeed = cursor.seed;
+      this.gridScales = scales;
+    }
+    return this.grid;
+  }
+
+  // produces a world showing the session at the place reached: its maze, the player
+  // and the cells they walked since it began, and the search and solution shown,
+  // taken from the cursor and the arrays of moves and expansions
+  MazeWorld view() {
+    ReplayCursor at = this.now;
+    MazeWorld view = new MazeWorld(this.grid(at), at.seed);
+    view.animate = false;
+    view.hScale = at.hScale;
+    view.vScale = at.vScale;
+    for (int i = at.moves - at.walked; i < at.moves; i++) {
+      view.visit(this.walks[i]);
+    }
+    view.player = at.player;
+    for (int i = at.expands - at.expanded; i < at.expands; i++) {
+      view.searched.addLast(this.expansions[i]);
+    }
+    if (at.pathAt >= 0) {
+      for (int v : at.path()) {
+        view.path.addLast(v);
+      }
+      view.finished = true;
+    }
+    view.showPaths = at.showPaths;
+    view.heatmap = at.heatmap;
+    return view;
+  }
+
+  // EFFECT: moves the given number of ticks on, showing every event passed in the
+  // view, which shows the place reached
+  void play(MazeWorld view, long ticks) {
+    this.time += ticks;
+    while (this.now.hasNext() && this.now.nextTick() <= this.time) {
+      int before = this.now.player;
+      this.show(view, this.now, this.now.step(), before);
+    }
+  }
+
+  // EFFECT: shows the event of the given type just read by the cursor in the view,
+  // where the player was on before
+  void show(MazeWorld view, ReplayCursor cursor, int type, int before) {
+    if (type == ReplayLog.MOVE) {
+      view.visit(before);
+      view.player = cursor.player;
+    }
+    else if (type == ReplayLog.EXPAND) {
+      view.searched.addLast(cursor.lastCell);
+    }
+    else if (type == ReplayLog.KEY) {
+      view.showPaths = cursor.showPaths;
+      view.heatmap = cursor.heatmap;
+    }
+    else if (type == ReplayLog.MAZE) {
+      view.clearSearch();
+      view.grid = this.grid(cursor);
+      view.seed = cursor.seed;
+      view.hScale = cursor.hScale;
+      view.vScale = cursor.vScale;
+      view.player = cursor.player;
+      view.stepped.clear();
+      view.visits = new short[view.grid.cells()];
+    }
+    else if (type == ReplayLog.PATH) {
+      for (int v : cursor.path()) {
+        view.path.addLast(v);
+      }
+      view.finished = true;
+    }
+    else {
+      view.clearSearch();
+    }
+  }
+}
+
+// represents a window playing a replay log back at any speed, e.g.
+//   new ReplayWorld(MazeReplay.read(file)).bigBang(800, 600, 0.05)
+// space pauses, + and - double and halve the ticks played a frame, left and right
+// seek back and forward a tenth of the log, and 0 to 9 seek to that tenth
+class ReplayWorld extends World {
+  MazeReplay replay;
+  MazeWorld view;
+  double speed = 1;
+  double owed;
+  boolean paused;
+
+  ReplayWorld(MazeReplay replay) {
+    this.replay = replay;
+    this.view = replay.view();
+  }
+
+  // plays the ticks owed at the current speed
+  public void onTick() {
+    if (!this.paused) {
+      this.owed += this.speed;
+      long ticks = (long) this.owed;
+      this.owed -= ticks;
+      this.replay.play(this.view, ticks);
+    }
+  }
+
+  // changes the speed or the place played
+  public void onKeyEvent(String k) {
+    long tenth = Math.max(1, this.replay.ticks / 10);
+    if (k.equals(" ")) {
+      this.paused = !this.paused;
+    }
+    if (k.equals("+") || k.equals("=")) {
+      this.speed = this.speed * 2;
+    }
+    if (k.equals("-")) {
+      this.speed = this.speed / 2;
+    }
+    if (k.equals("right")) {
+      this.seek(this.replay.time + tenth);
+    }
+    if (k.equals("left")) {
+      this.seek(this.replay.time - tenth);
+    }
+    if (k.length() == 1 && Character.isDigit(k.charAt(0))) {
+      this.seek(this.replay.ticks * (k.charAt(0) - '0') / 10);
+    }
+  }
+
+  // EFFECT: moves the replay to the given tick and shows it
+  void seek(long tick) {
+    this.replay.seek(Math.max(0, tick));
+    this.view = this.replay.view();
+    this.owed = 0;
+  }
+
+  // draws the world the replay shows
+  public WorldScene makeScene() {
+    return this.view.makeScene();
+  }
+}
+
+// represents examples of recording a session and playing it back
+class ExamplesMazeReplay {
+  // represents what a world showed at one tick
+  static class Shown {
+    long tick;
+    long seed;
+    int player;
+    int[] searched;
+    int[] path;
+    short[] visits;
+    boolean showPaths;
+
+    Shown(MazeWorld w, long tick) {
+      this.tick = tick;
+      this.seed = w.seed;
+      this.player = w.player;
+      this.searched = w.searched.toArray();
+      this.path = w.path.toArray();
+      this.visits = w.visits.clone();
+      this.showPaths = w.showPaths;
+    }
+
+    // checks if the world shows the same
+    boolean same(MazeWorld w) {
+      return this.seed == w.seed && this.player == w.player
+          && Arrays.equals(this.searched, w.searched.toArray())
+          && Arrays.equals(this.path, w.path.toArray())
+          && Arrays.equals(this.visits, w.visits) && this.showPaths == w.showPaths;
+    }
+  }
+
+  ArrayList<Shown> shown;
+  MazeWorld live;
+
+  // EFFECT: plays the keys on the live world, then the given number of ticks,
+  // remembering what it showed before each tick
+  void play(int ticks, String... keys) {
+    for (String k : keys) {
+      this.live.onKeyEvent(k);
+    }
+    for (int i = 0; i < ticks; i++) {
+      this.shown.add(new Shown(this.live, this.live.log.tick));
+      this.live.onTick();
+    }
+  }
+
+  // EFFECT: records a session of searches, moves and new mazes on a small world
+  void initSession() {
+    this.shown = new ArrayList<Shown>();
+    this.live = new MazeWorld(20, 15, 4);
+    this.live.log = new ReplayLog(this.live);
+    this.play(30, "b");
+    this.play(3, "right", "down", "down", "right", "left", "up");
+    this.play(300, "s");
+    this.play(5, "down", "right", "s", "r", "right", "down");
+    this.play(40, "a", "right");
+    this.play(2, "i", "d", "p");
+    this.play(1, "h", "i", "m", "down");
+    this.play(150);
+    this.play(2, "x", "t", "v");
+  }
+
+  // tests that seeking back and forth shows what the world showed at each tick
+  void testSeek(Tester t) throws IOException {
+    this.initSession();
+    MazeReplay replay = new MazeReplay(this.live.log.toBytes());
+    t.checkExpect(replay.events, this.live.log.events);
+    t.checkExpect(replay.ticks <= this.live.log.tick, true);
+    boolean same = true;
+    for (int i = this.shown.size() - 1; i >= 0; i -= 7) {
+      Shown s = this.shown.get(i);
+      replay.seek(s.tick);
+      same = same && s.same(replay.view());
+    }
+    for (int i = 0; i < this.shown.size(); i += 5) {
+      Shown s = this.shown.get(i);
+      replay.seek(s.tick);
+      same = same && s.same(replay.view());
+    }
+    t.checkExpect(same, true);
+    // the maze shown is the one the world was on
+    replay.seek(this.shown.get(this.shown.size() - 1).tick);
+    MazeWorld view = replay.view();
+    t.checkExpect(view.grid.passages, this.live.grid.passages);
+    t.checkExpect(view.hScale, this.live.hScale);
+    replay.seekEvent(replay.events);
+    t.checkExpect(replay.now.hasNext(), false);
+    replay.seekEvent(0);
+    t.checkExpect(replay.now.event, 0L);
+    t.checkExpect(replay.now.mazeAt, -1);
+  }
+
+  // tests that playing a replay forward shows what the world showed at each tick
+  void testPlay(Tester t) throws IOException {
+    this.initSession();
+    MazeReplay replay = new MazeReplay(this.live.log.toBytes());
+    MazeWorld view = replay.view();
+    boolean same = true;
+    long tick = 0;
+    for (Shown s : this.shown) {
+      replay.play(view, s.tick - tick);
+      tick = s.tick;
+      same = same && s.same(view);
+    }
+    t.checkExpect(same, true);
+    // playing many ticks at once passes the same events
+    replay.seek(0);
+    view = replay.view();
+    replay.play(view, 100);
+    t.checkExpect(this.shown.get(100).same(view), true);
+    t.checkExpect(view.makeScene().width, 200);
+  }
+
+  // tests that a long search and a long idle spell log in few bytes and replay exactly
+  void testCompact(Tester t) throws IOException {
+    MazeWorld w = new MazeWorld(300, 300, 2);
+    w.log = new ReplayLog(w);
+    w.onKeyEvent("b");
+    while (w.searching) {
+      w.onTick();
+    }
+    int expanded = w.result.expanded.length;
+    t.checkExpect(w.log.size < 3 * expanded, true);
+    MazeReplay replay = new MazeReplay(w.log.toBytes());
+    t.checkExpect(replay.marks.size(), (int) (replay.events / MazeReplay.EVERY) + 1);
+    replay.seek(expanded / 2);
+    t.checkExpect(replay.now.expanded, expanded / 2);
+    t.checkExpect(replay.now.lastCell, w.result.expanded[expanded / 2 - 1]);
+    t.checkExpect(replay.view().searched.size(), expanded / 2);
+    // the view is built from the cursor and the arrays read up front, not the log
+    MazeReplay wiped = new MazeReplay(w.log.toBytes());
+    wiped.seek(expanded / 2);
+    Arrays.fill(wiped.bytes, ReplayLog.HEADER, wiped.now.at, (byte) 0);
+    t.checkExpect(wiped.view().searched.toArray(), replay.view().searched.toArray());
+    replay.seek(w.log.tick);
+    t.checkExpect(replay.now.path(), w.result.path);
+    // a long idle spell takes a few bytes
+    int size = w.log.size;
+    for (int i = 0; i < 100000; i++) {
+      w.onTick();
+    }
+    w.onKeyEvent("right");
+    t.checkExpect(w.log.size - size <= 6, true);
+    replay = new MazeReplay(w.log.toBytes());
+    t.checkExpect(replay.ticks, w.log.tick);
+    replay.seek(replay.ticks - 1);
+    t.checkExpect(replay.now.player, 0);
+    replay.seek(replay.ticks);
+    t.checkExpect(replay.now.player, w.player);
+  }
+
+  // tests that a replay log reads back from its file and bad logs are refused
+  void testFiles(Tester t) throws IOException {
+    this.initSession();
+    Path file = Files.createTempFile("maze", ".replay");
+    file.toFile().deleteOnExit();
+    this.live.log.write(file);
+    MazeReplay replay = MazeReplay.read(file);
+    t.checkExpect(replay.width, 20);
+    t.checkExpect(replay.height, 15);
+    t.checkExpect(replay.bytes, this.live.log.toBytes());
+    byte[] bad = this.live.log.toBytes();
+    bad[0] = 0;
+    t.checkConstructorException(new IOException("Not a replay log"), "MazeReplay", bad);
+    bad = this.live.log.toBytes();
+    bad[4] = 9;
+    t.checkConstructorException(new IOException("Unsupported replay log version"),
+        "MazeReplay", bad);
+    t.checkConstructorException(new IOException("Truncated replay log"), "MazeReplay",
+        Arrays.copyOf(this.live.log.toBytes(), this.live.log.size - 1));
+    bad = Arrays.copyOf(this.live.log.toBytes(), this.live.log.size + 1);
+    bad[this.live.log.size] = 7;
+    t.checkConstructorException(new IOException("Invalid replay log"), "MazeReplay", bad);
+    bad = Arrays.copyOf(this.live.log.toBytes(), this.live.log.size + 2);
+    bad[this.live.log.size] = ReplayLog.KEY;
+    bad[this.live.log.size + 1] = 99;
+    t.checkConstructorException(new IOException("Invalid replay log"), "MazeReplay", bad);
+  }
+
+  // tests that ReplayWorld's keys change the speed, pause and jump through the replay
+  void testReplayWorld(Tester t) throws IOException {
+    this.initSession();
+    ReplayWorld world = new ReplayWorld(new MazeReplay(this.live.log.toBytes()));
+    world.onKeyEvent("+");
+    world.onTick();
+    t.checkExpect(world.replay.time, 2L);
+    world.onKeyEvent("-");
+    world.onKeyEvent("-");
+    world.onTick();
+    world.onTick();
+    t.checkExpect(world.replay.time, 3L);
+    world.onKeyEvent(" ");
+    world.onTick();
+    t.checkExpect(world.replay.time, 3L);
+    world.onKeyEvent("5");
+    long half = world.replay.ticks / 2;
+    t.checkExpect(world.replay.time, half);
+    world.onKeyEvent("left");
+    t.checkExpect(world.replay.time, half - world.replay.ticks / 10);
+    for (Shown s : this.shown) {
+      if (s.tick == world.replay.time) {
+        t.checkExpect(s.same(world.view), true);
+      }
+    }
+    t.checkExpect(world.makeScene().width, 200);
+  }
+}
@@ -0,0 +1,539 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import tester.*;
+
+// represents the size, seed and scales a maze is asked for by, which make it exactly
+class MazeKey {
+  int width;
+  int height;
+  long seed;
+  int hScale;
+  int vScale;
+
+  MazeKey(int width, int height, long seed, int hScale, int vScale) {
+    this.width = width;
+    this.height = height;
+    this.seed = seed;
+    this.hScale = hScale;
+    this.vScale = vScale;
+  }
+
+  // checks if the given object asks for the same maze
+  public boolean equals(Object that) {
+    if (!(that instanceof MazeKey)) {
+      return false;
+    }
+    else {
+      MazeKey k = (MazeKey) that;
+      return this.width == k.width && this.height == k.height && this.seed == k.seed
+          && this.hScale == k.hScale && this.vScale == k.vScale;
+    }
+  }
+
+  // produces a hashcode for this key
+  public int hashCode() {
+    return Long.hashCode(this.seed) * 31 + (this.width << 16 ^ this.height) * 17
+        + (this.hScale << 16 ^ this.vScale);
+  }
+}
+
+// represents a maze the server has made, with its tree index once a request needs it
+class ServedMaze {
+  MazeKey key;
+  MazeGrid grid;
+  TreeIndex index;
+
+  ServedMaze(MazeKey key, MazeGrid grid) {
+    this.key = key;
+    this.grid = grid;
+  }
+
+  // produces the tree index of the maze, building it for the first request to ask
+  synchronized TreeIndex index() {
+    if (this.index == null) {
+      this.index = new TreeIndex(this.grid);
+    }
+    return this.index;
+  }
+}
+
+// represents one kind of request the server answers, from its query and its body
+interface MazeRequest {
+  // produces the response to the request, positioned at its start
+  ByteBuffer answer(HashMap<String, String> query, InputStream body) throws IOException;
+}
+
+// represents a local HTTP service making and solving mazes for other processes, e.g.
+//   java MazeServer 8080 4 64
+// for port 8080, 4 worker threads and the 64 mazes used last kept; every request
+// runs on the worker pool, and requests for a maze being made wait for that one maze
+// instead of making it again; all numbers in responses are little-endian
+//   GET  /generate?width=&height=[&seed=&hScale=&vScale=]  a maze file of the maze
+//   GET  /solve?width=&height=[&seed=&hScale=&vScale=&strategy=bfs|dfs|astar|both
+//        &from=&to=]  int cells expanded, int start, int steps, then the direction of
+//        each step as 2 bits in longs, first step lowest
+//   POST /distances?width=&height=[...]  with a body of int (from, to) pairs, the int
+//        distance between each pair
+class MazeServer {
+  static final int MAX_CELLS = 1 << 24;
+
+  HttpServer http;
+  ExecutorService workers;
+  int capacity;
+  LinkedHashMap<MazeKey, CompletableFuture<ServedMaze>> cache;
+  MazeMetrics metrics;
+  MazeFile files;
+  ThreadLocal<Solver> solvers;
+
+  MazeServer(int port, int threads, int capacity) throws IOException {
+    if (threads < 1 || capacity < 1) {
+      throw new IllegalArgumentException("Invalid server size");
+    }
+    this.capacity = capacity;
+    this.metrics = new MazeMetrics();
+    this.files = new MazeFile();
+    this.solvers = ThreadLocal.withInitial(() -> new Solver());
+    this.cache = new LinkedHashMap<MazeKey, CompletableFuture<ServedMaze>>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<MazeKey, CompletableFuture<ServedMaze>> e) {
+        return this.size() > capacity;
+      }
+    };
+    this.workers = Executors.newFixedThreadPool(threads);
+    this.http = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    this.http.setExecutor(this.workers);
+    this.http.createContext("/generate", ex -> this.handle(ex, (q, b) -> this.generate(q)));
+    this.http.createContext("/solve", ex -> this.handle(ex, (q, b) -> this.solve(q)));
+    this.http.createContext("/distances", ex -> this.handle(ex, (q, b) -> this.distances(q, b)));
+  }
+
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+    MazeServer server = new MazeServer(port, threads, capacity);
+    server.metrics.register("maze:type=Server");
+    server.start();
+    System.out.println("serving mazes on http://localhost:" + server.port());
+  }
+
+  // produces the port the server listens on
+  int port() {
+    return this.http.getAddress().getPort();
+  }
+
+  // EFFECT: starts answering requests
+  void start() {
+    this.http.start();
+  }
+
+  // EFFECT: stops answering requests and lets the workers finish
+  void stop() {
+    this.http.stop(0);
+    this.workers.shutdown();
+  }
+
+  // EFFECT: answers the exchange with the request, with the reason as text and status
+  // 400 if the request is not valid or 500 if answering it failed, and records its
+  // count and latency
+  void handle(HttpExchange exchange, MazeRequest request) throws IOException {
+    long start = System.nanoTime();
+    int status = 200;
+    byte[] body;
+    try {
+      ByteBuffer answer = request.answer(this.query(exchange.getRequestURI().getRawQuery()),
+          exchange.getRequestBody());
+      body = new byte[answer.remaining()];
+      answer.get(body);
+    }
+    catch (IllegalArgumentException e) {
+      status = 400;
+      body = String.valueOf(e.getMessage()).getBytes("UTF-8");
+    }
+    catch (RuntimeException | OutOfMemoryError e) {
+      Throwable cause = e instanceof CompletionException && e.getCause() != null
+          ? e.getCause() : e;
+      status = 500;
+      body = String.valueOf(cause).getBytes("UTF-8");
+    }
+    exchange.getResponseHeaders().set("Content-Type",
+        status == 200 ? "application/octet-stream" : "text/plain");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+    this.metrics.add(status == 200 ? "requests" : "requests.bad", 1);
+    this.metrics.add("requests.totalNs", System.nanoTime() - start);
+  }
+
+  // produces the parameters of a query string
+  HashMap<String, String> query(String raw) {
+    HashMap<String, String> query = new HashMap<String, String>();
+    if (raw != null) {
+      for (String pair : raw.split("&")) {
+        int eq = pair.indexOf('=');
+        if (eq > 0) {
+          query.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+      }
+    }
+    return query;
+  }
+
+  // produces the number given for the name in the query, or the default if there is
+  // none, where a default of null means it must be given
+  long number(HashMap<String, String> query, String name, Long otherwise) {
+    String value = query.get(name);
+    if (value == null && otherwise == null) {
+      throw new IllegalArgumentException("Missing " + name);
+    }
+    try {
+      return value == null ? otherwise : Long.parseLong(value);
+    }
+    catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid " + name);
+    }
+  }
+
+  // produces the maze the query asks for
+  MazeKey key(HashMap<String, String> query) {
+    long width = this.number(query, "width", null);
+    long height = this.number(query, "height", null);
+    long hScale = this.number(query, "hScale", 100L);
+    long vScale = this.number(query, "vScale", 100L);
+    if (width < 2 || height < 2 || width * height > MAX_CELLS) {
+      throw new IllegalArgumentException("Invalid board size");
+    }
+    if (hScale < 1 || vScale < 1 || hScale > 10000 || vScale > 10000) {
+      throw new IllegalArgumentException("Invalid scale");
+    }
+    return new MazeKey((int) width, (int) height, this.number(query, "seed", 0L),
+        (int) hScale, (int) vScale);
+  }
+
+  // produces the maze for the key, from the cache if it was made lately; when it is
+  // not there this thread makes it, and requests for it meanwhile wait for this one;
+  // if making it fails they all fail with it, and it is dropped from the cache so
+  // that the next request tries again
+  ServedMaze maze(MazeKey key) {
+    CompletableFuture<ServedMaze> made;
+    boolean mine = false;
+    synchronized (this.cache) {
+      made = this.cache.get(key);
+      if (made == null) {
+        made = new CompletableFuture<ServedMaze>();
+        this.cache.put(key, made);
+        mine = true;
+      }
+    }
+    this.metrics.add(mine ? "cache.misses" : "cache.hits", 1);
+    if (mine) {
+      long start = System.nanoTime();
+      try {
+        MazeGrid grid = new MazeGrid(key.width, key.height);
+        new KruskalTree().span(grid, grid.weights(key.seed, key.hScale, key.vScale),
+            Math.max(key.hScale, key.vScale));
+        made.complete(new ServedMaze(key, grid));
+      }
+      catch (RuntimeException | Error e) {
+        synchronized (this.cache) {
+          this.cache.remove(key, made);
+        }
+        made.completeExceptionally(e);
+        throw e;
+      }
+      this.metrics.add("generate.totalNs", System.nanoTime() - start);
+    }
+    return made.join();
+  }
+
+  // produces the maze the query asks for as a maze file
+  ByteBuffer generate(HashMap<String, String> query) {
+    ServedMaze maze = this.maze(this.key(query));
+    ByteBuffer out = ByteBuffer.allocate((int) this.files.sizeOf(maze.grid));
+    this.files.put(out, maze.grid, maze.key.hScale, maze.key.vScale, maze.key.seed);
+    out.flip();
+    return out;
+  }
+
+  // produces the search the query asks for on the maze it asks for, with its path
+  // packed as 2 bit steps
+  ByteBuffer solve(HashMap<String, String> query) {
+    ServedMaze maze = this.maze(this.key(query));
+    MazeGrid grid = maze.grid;
+    int from = this.cell(grid, this.number(query, "from", 0L), "from");
+    int to = this.cell(grid, this.number(query, "to", grid.cells() - 1L), "to");
+    SearchResult result = this.solvers.get().solve(grid, this.strategy(query.get("strategy")),
+        from, to);
+    return this.encodePath(result.expanded.length, result.path);
+  }
+
+  // produces the distance between each pair of cells in the body on the maze the
+  // query asks for, read off its tree index
+  ByteBuffer distances(HashMap<String, String> query, InputStream body) throws IOException {
+    ServedMaze maze = this.maze(this.key(query));
+    ByteBuffer in = ByteBuffer.wrap(body.readAllBytes()).order(ByteOrder.LITTLE_ENDIAN);
+    if (in.remaining() % 8 != 0) {
+      throw new IllegalArgumentException("Invalid pairs");
+    }
+    int[] from = new int[in.remaining() / 8];
+    int[] to = new int[from.length];
+    for (int i = 0; i < from.length; i++) {
+      from[i] = this.cell(maze.grid, in.getInt(), "pairs");
+      to[i] = this.cell(maze.grid, in.getInt(), "pairs");
+    }
+    int[] out = new int[from.length];
+    maze.index().distances(from, to, out);
+    ByteBuffer answer = ByteBuffer.allocate(out.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+    answer.asIntBuffer().put(out);
+    return answer;
+  }
+
+  // produces the given cell if it is in the grid
+  int cell(MazeGrid grid, long cell, String name) {
+    if (cell < 0 || cell >= grid.cells()) {
+      throw new IllegalArgumentException("Invalid " + name);
+    }
+    return (int) cell;
+  }
+
+  // produces a new search of the named strategy, breadth first if none is named
+  SearchAdd strategy(String name) {
+    if (name == null || name.equals("bfs")) {
+      return new BfsAdd();
+    }
+    else if (name.equals("dfs")) {
+      return new DfsAdd();
+    }
+    else if (name.equals("astar")) {
+      return new AStarAdd();
+    }
+    else if (name.equals("both")) {
+      return new BiBfsAdd();
+    }
+    else {
+      throw new IllegalArgumentException("Invalid strategy");
+    }
+  }
+
+  // produces the cells expanded and the path as a path record of the maze file format
+  ByteBuffer encodePath(int expanded, int[] path) {
+    ByteBuffer out = ByteBuffer.allocate(this.files.pathSize(path));
+    this.files.putPath(out, expanded, path);
+    out.rewind();
+    return out;
+  }
+}
+
+// represents a client of the maze server that asks it for mazes from many threads at
+// once and reports the throughput and latencies it saw, e.g.
+//   java MazeLoad 8080 8 20000 200
+// for 8 clients making 20000 requests in all for 200 x 200 mazes on port 8080; the
+// requests alternate between generating and solving over 64 seeds, so most are
+// answered from the cache
+class MazeLoad {
+  HttpClient client = HttpClient.newHttpClient();
+
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    int clients = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+    int size = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+    System.out.println(new MazeLoad().run(port, clients, requests, size));
+  }
+
+  // produces a report of sending the requests to the server on the port from the
+  // given number of threads at once
+  String run(int port, int clients, int requests, int size) throws Exception {
+    long[] latencies = new long[requests];
+    AtomicInteger next = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    ExecutorService threads = Executors.newFixedThreadPool(clients);
+    CompletableFuture<?>[] done = new CompletableFuture<?>[clients];
+    long start = System.nanoTime();
+    for (int c = 0; c < clients; c++) {
+      done[c] = CompletableFuture.runAsync(() -> {
+        for (int i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+          String path = (i % 2 == 0 ? "/generate" : "/solve") + "?width=" + size + "&height="
+              + size + "&seed=" + (i / 2 % 64);
+          long sent = System.nanoTime();
+          try {
+            if (this.get(port, path).statusCode() != 200) {
+              failed.incrementAndGet();
+            }
+          }
+          catch (Exception e) {
+            failed.incrementAndGet();
+          }
+          latencies[i] = System.nanoTime() - sent;
+        }
+      }, threads);
+    }
+    CompletableFuture.allOf(done).join();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    threads.shutdown();
+    Arrays.sort(latencies);
+    return String.format("%d requests from %d clients in %.2f s: %.0f requests/s, "
+        + "p50 %.2f ms, p99 %.2f ms, %d failed", requests, clients, seconds, requests / seconds,
+        latencies[requests / 2] / 1e6, latencies[Math.min(requests - 1, requests * 99 / 100)]
+        / 1e6, failed.get());
+  }
+
+  // produces the server's response to a GET of the path
+  HttpResponse<byte[]> get(int port, String path) throws IOException, InterruptedException {
+    return this.client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .build(), HttpResponse.BodyHandlers.ofByteArray());
+  }
+
+  // produces the server's response to a POST of the body to the path
+  HttpResponse<byte[]> post(int port, String path, byte[] body)
+      throws IOException, InterruptedException {
+    return this.client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(),
+        HttpResponse.BodyHandlers.ofByteArray());
+  }
+}
+
+// represents examples of the maze server and its load client
+class ExamplesMazeServer {
+  // tests that the server generates, solves and measures mazes and refuses bad requests
+  void testServer(Tester t) throws Exception {
+    MazeServer server = new MazeServer(0, 4, 8);
+    server.start();
+    MazeLoad load = new MazeLoad();
+    int port = server.port();
+    try {
+      HttpResponse<byte[]> made = load.get(port, "/generate?width=30&height=20&seed=7");
+      t.checkExpect(made.statusCode(), 200);
+      MazeWorld back = new MazeFile().read(ByteBuffer.wrap(made.body()), made.body().length);
+      t.checkExpect(back.grid.passages, new MazeWorld(30, 20, 7).grid.passages);
+      t.checkExpect(back.seed, 7L);
+      HttpResponse<byte[]> horizontal = load.get(port,
+          "/generate?width=30&height=20&seed=7&hScale=100&vScale=10");
+      MazeWorld h = new MazeFile().read(ByteBuffer.wrap(horizontal.body()),
+          horizontal.body().length);
+      t.checkExpect(h.vScale, 10);
+      t.checkExpect(Arrays.equals(h.grid.passages, back.grid.passages), false);
+
+      for (String strategy : new String[] {"bfs", "dfs", "astar", "both"}) {
+        HttpResponse<byte[]> solved = load.get(port,
+            "/solve?width=30&height=20&seed=7&from=31&to=500&strategy=" + strategy);
+        SearchResult local = new Solver().solve(back.grid, server.strategy(strategy), 31, 500);
+        ByteBuffer in = ByteBuffer.wrap(solved.body()).order(ByteOrder.LITTLE_ENDIAN);
+        t.checkExpect(in.getInt(0), local.expanded.length);
+        t.checkExpect(new MazeFile().readPath(in, 30), local.path);
+      }
+
+      ByteBuffer pairs = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+      pairs.putInt(0).putInt(599).putInt(45).putInt(45).putInt(100).putInt(7).putInt(599)
+          .putInt(0);
+      HttpResponse<byte[]> far = load.post(port, "/distances?width=30&height=20&seed=7",
+          pairs.array());
+      ByteBuffer out = ByteBuffer.wrap(far.body()).order(ByteOrder.LITTLE_ENDIAN);
+      TreeIndex index = new TreeIndex(back.grid);
+      t.checkExpect(out.getInt(), index.distance(0, 599));
+      t.checkExpect(out.getInt(), 0);
+      t.checkExpect(out.getInt(), index.distance(100, 7));
+      t.checkExpect(out.getInt(), index.distance(0, 599));
+
+      HttpResponse<byte[]> bad = load.get(port, "/generate?width=1&height=20");
+      t.checkExpect(bad.statusCode(), 400);
+      t.checkExpect(new String(bad.body(), "UTF-8"), "Invalid board size");
+      t.checkExpect(new String(load.get(port, "/solve?height=20").body(), "UTF-8"),
+          "Missing width");
+      t.checkExpect(new String(load.get(port, "/solve?width=5&height=5&strategy=x").body(),
+          "UTF-8"), "Invalid strategy");
+      t.checkExpect(new String(load.get(port, "/solve?width=5&height=5&to=25").body(),
+          "UTF-8"), "Invalid to");
+      t.checkExpect(server.metrics.get("requests.bad"), 4L);
+      t.checkExpect(server.metrics.get("cache.misses"), 3L);
+    }
+    finally {
+      server.stop();
+    }
+  }
+
+  // tests that requests at once for one maze share its generation and the cache is bounded
+  void testCoalesce(Tester t) throws Exception {
+    MazeServer server = new MazeServer(0, 8, 2);
+    server.start();
+    try {
+      MazeLoad load = new MazeLoad();
+      CompletableFuture<?>[] all = new CompletableFuture<?>[8];
+      for (int i = 0; i < all.length; i++) {
+        all[i] = CompletableFuture.runAsync(() -> {
+          try {
+            load.get(server.port(), "/generate?width=400&height=400&seed=3");
+          }
+          catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        });
+      }
+      CompletableFuture.allOf(all).join();
+      // eight requests at once for one maze make it once
+      t.checkExpect(server.metrics.get("cache.misses"), 1L);
+      t.checkExpect(server.metrics.get("cache.hits"), 7L);
+      server.maze(new MazeKey(10, 10, 1, 100, 100));
+      server.maze(new MazeKey(10, 10, 2, 100, 100));
+      t.checkExpect(server.cache.size(), 2);
+      t.checkExpect(server.cache.containsKey(new MazeKey(400, 400, 3, 100, 100)), false);
+      String report = load.run(server.port(), 4, 200, 20);
+      t.checkExpect(report.startsWith("200 requests from 4 clients"), true);
+      t.checkExpect(report.endsWith(", 0 failed"), true);
+    }
+    finally {
+      server.stop();
+    }
+    t.checkConstructorException(new IllegalArgumentException("Invalid server size"),
+        "MazeServer", 0, 0, 1);
+  }
+
+  // tests that a maze that fails to generate fails every request waiting for it and
+  // leaves the cache, and that a request failing that way is answered with 500
+  void testFailure(Tester t) throws Exception {
+    MazeServer server = new MazeServer(0, 2, 4);
+    MazeKey broken = new MazeKey(-100, 5, 1, 100, 100);
+    t.checkException(new NegativeArraySizeException("-14"), server, "maze", broken);
+    t.checkExpect(server.cache.containsKey(broken), false);
+    // a second request makes it again rather than waiting on the failed one
+    t.checkException(new NegativeArraySizeException("-14"), server, "maze", broken);
+    t.checkExpect(server.metrics.get("cache.misses"), 2L);
+    server.http.createContext("/broken", ex -> server.handle(ex, (q, b) -> {
+      server.maze(broken);
+      return ByteBuffer.allocate(0);
+    }));
+    server.start();
+    try {
+      HttpResponse<byte[]> failed = new MazeLoad().get(server.port(), "/broken");
+      t.checkExpect(failed.statusCode(), 500);
+      t.checkExpect(new String(failed.body(), "UTF-8"),
+          "java.lang.NegativeArraySizeException: -14");
+      t.checkExpect(server.metrics.get("requests.bad"), 1L);
+    }
+    finally {
+      server.stop();
+    }
+  }
+}
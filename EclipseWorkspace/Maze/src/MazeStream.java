@@ -0,0 +1,403 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import tester.*;
+
+// represents Eller's algorithm making a maze one row at a time from a seed, keeping
+// only the sets of the current row, so a maze of any height costs O(width) memory;
+// each row comes out as wall bits laid out as in a MazeGrid, bit 2 * x open for the
+// right wall of column x and bit 2 * x + 1 for its down wall
+class EllerRows implements Iterator<long[]> {
+  int width;
+  int height;
+  int y;
+  long opened;
+  SplittableRandom rand;
+  long coins; // random bits drawn 64 at a time for the coin flips
+  int coinsLeft;
+  int[] sets; // the set of each cell of the row, below width, or -1 for a new cell
+  int[] parent; // the set each set was merged into along the row
+  boolean[] used;
+  int[] count;
+  int[] pick;
+  boolean[] down;
+  long[] bits;
+
+  EllerRows(int width, int height, long seed) {
+    if (width < 2 || height < 2) {
+      throw new IllegalArgumentException("Invalid board size");
+    }
+    this.width = width;
+    this.height = height;
+    this.y = 0;
+    this.rand = new SplittableRandom(seed);
+    this.sets = new int[width];
+    this.parent = new int[width];
+    this.used = new boolean[width];
+    this.count = new int[width];
+    this.pick = new int[width];
+    this.down = new boolean[width];
+    this.bits = new long[(width * 2 + 63) / 64];
+    for (int x = 0; x < width; x++) {
+      this.sets[x] = -1;
+    }
+  }
+
+  // checks if there are rows left to make
+  public boolean hasNext() {
+    return this.y < this.height;
+  }
+
+  // EFFECT: makes the next row, joining neighbors in different sets at random (all of
+  // them on the last row) and opening at least one wall down from every set
+  // produces the row's wall bits, in an array reused by the next call
+  public long[] next() {
+    if (this.y >= this.height) {
+      throw new NoSuchElementException("No rows left");
+    }
+    boolean last = this.y == this.height - 1;
+    Arrays.fill(this.bits, 0L);
+    this.label();
+    for (int x = 0; x < this.width - 1; x++) {
+      int a = this.find(this.sets[x]);
+      int b = this.find(this.sets[x + 1]);
+      if (a != b && (last || this.flip())) {
+        this.parent[b] = a;
+        this.openBit(x * 2);
+      }
+    }
+    for (int x = 0; x < this.width; x++) {
+      this.sets[x] = this.find(this.sets[x]);
+    }
+    if (!last) {
+      this.dropDown();
+    }
+    this.y++;
+    return this.bits;
+  }
+
+  // EFFECT: gives every new cell of the row a set no other cell uses, and starts
+  // every set unmerged
+  void label() {
+    Arrays.fill(this.used, false);
+    for (int x = 0; x < this.width; x++) {
+      if (this.sets[x] >= 0) {
+        this.used[this.sets[x]] = true;
+      }
+    }
+    int free = 0;
+    for (int x = 0; x < this.width; x++) {
+      if (this.sets[x] < 0) {
+        while (this.used[free]) {
+          free++;
+        }
+        this.sets[x] = free;
+        this.used[free] = true;
+      }
+      this.parent[x] = x;
+    }
+  }
+
+  // EFFECT: opens walls down from the row at random, then one more from a cell picked
+  // at random in every set that has none, and keeps the sets of the cells below them
+  void dropDown() {
+    for (int x = 0; x < this.width; x++) {
+      this.count[x] = 0;
+      this.down[x] = false;
+    }
+    for (int x = 0; x < this.width; x++) {
+      int s = this.sets[x];
+      this.count[s]++;
+      if (this.rand.nextInt(this.count[s]) == 0) {
+        this.pick[s] = x;
+      }
+      if (this.flip()) {
+        this.openBit(x * 2 + 1);
+        this.down[s] = true;
+      }
+    }
+    for (int x = 0; x < this.width; x++) {
+      int s = this.sets[x];
+      if (!this.down[s]) {
+        this.openBit(this.pick[s] * 2 + 1);
+        this.down[s] = true;
+      }
+    }
+    for (int x = 0; x < this.width; x++) {
+      if ((this.bits[(x * 2 + 1) >>> 6] & (1L << (x * 2 + 1))) == 0) {
+        this.sets[x] = -1;
+      }
+    }
+  }
+
+  // produces a fair coin flip, taking the next of the random bits on hand
+  boolean flip() {
+    if (this.coinsLeft == 0) {
+      this.coins = this.rand.nextLong();
+      this.coinsLeft = 64;
+    }
+    this.coinsLeft--;
+    boolean heads = (this.coins & 1) != 0;
+    this.coins >>>= 1;
+    return heads;
+  }
+
+  // finds the set the given set has been merged into on this row
+  int find(int set) {
+    while (this.parent[set] != set) {
+      this.parent[set] = this.parent[this.parent[set]];
+      set = this.parent[set];
+    }
+    return set;
+  }
+
+  // EFFECT: opens the wall of the given bit of the row
+  void openBit(int bit) {
+    this.bits[bit >>> 6] |= 1L << bit;
+    this.opened++;
+  }
+
+  // produces a grid holding every row left, for mazes small enough to keep in memory
+  MazeGrid toGrid() {
+    MazeGrid grid = new MazeGrid(this.width, this.height);
+    while (this.hasNext()) {
+      int row = this.y;
+      long[] bits = this.next();
+      for (int bit = 0; bit < this.width * 2; bit++) {
+        if ((bits[bit >>> 6] & (1L << bit)) != 0) {
+          grid.open(row * this.width * 2 + bit);
+        }
+      }
+    }
+    return grid;
+  }
+}
+
+// represents a grid read from a maze file a page of its passage bits at a time as
+// cells are asked about, keeping only the pages used most recently in memory; each
+// page holds the walls of pageLongs * 32 consecutive cells, so a few whole rows
+class PagedGrid extends MazeGrid {
+  FileChannel channel;
+  int pageLongs;
+  LinkedHashMap<Integer, long[]> pages;
+  ByteBuffer buffer;
+  int lastIndex = -1;
+  long[] lastPage;
+  int reads;
+
+  PagedGrid(int width, int height, int opened, FileChannel channel, int pageLongs,
+      int maxPages) {
+    super(width, height, null, opened);
+    this.channel = channel;
+    this.pageLongs = pageLongs;
+    this.buffer = ByteBuffer.allocateDirect(pageLongs * 8).order(ByteOrder.LITTLE_ENDIAN);
+    this.pages = new LinkedHashMap<Integer, long[]>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Integer, long[]> eldest) {
+        return this.size() > maxPages;
+      }
+    };
+  }
+
+  // checks if the wall of the given edge id has been knocked down, reading its page
+  // in from the file if it is not held
+  boolean isOpen(int id) {
+    int word = id >>> 6;
+    return (this.page(word / this.pageLongs)[word % this.pageLongs] & (1L << id)) != 0;
+  }
+
+  // produces the page of the given index, reading it from the file if it is not held
+  long[] page(int index) {
+    if (index == this.lastIndex) {
+      return this.lastPage;
+    }
+    long[] page = this.pages.get(index);
+    if (page == null) {
+      page = new long[this.pageLongs];
+      this.buffer.clear();
+      long at = MazeFile.HEADER + (long) index * this.pageLongs * 8;
+      try {
+        int read = 0;
+        while (read >= 0 && this.buffer.hasRemaining()) {
+          read = this.channel.read(this.buffer, at + this.buffer.position());
+        }
+      }
+      catch (IOException e) {
+        throw new IllegalStateException("Cannot read maze file", e);
+      }
+      this.buffer.flip();
+      this.buffer.asLongBuffer().get(page, 0, this.buffer.remaining() / 8);
+      this.pages.put(index, page);
+      this.reads++;
+    }
+    this.lastIndex = index;
+    this.lastPage = page;
+    return page;
+  }
+
+  // EFFECT: refuses to change the walls, which belong to the file
+  void open(int id) {
+    throw new UnsupportedOperationException("Paged grids are read only");
+  }
+
+  // EFFECT: refuses to close the walls, which belong to the file
+  void clear() {
+    throw new UnsupportedOperationException("Paged grids are read only");
+  }
+
+  // EFFECT: puts the passage bits into the buffer a page at a time, reading in the
+  // pages that are not held
+  void putPassages(LongBuffer out) {
+    int words = this.words();
+    for (int index = 0; index * this.pageLongs < words; index++) {
+      out.put(this.page(index), 0, Math.min(this.pageLongs, words - index * this.pageLongs));
+    }
+  }
+
+  // EFFECT: closes the file the pages are read from
+  void close() throws IOException {
+    this.channel.close();
+  }
+}
+
+// represents examples of making mazes a row at a time and reading them back in pages
+class ExamplesMazeStream {
+  // produces a new empty file to save into
+  Path temp() {
+    try {
+      Path file = Files.createTempFile("maze", ".bin");
+      file.toFile().deleteOnExit();
+      return file;
+    }
+    catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // checks that every cell of the grid is reached from the first one
+  boolean connected(MazeGrid grid) {
+    SearchResult all = new Solver().solve(grid, new BfsAdd(), 0, -1);
+    return all.expanded.length == grid.cells();
+  }
+
+  // tests that EllerRows makes a whole maze from its seed and runs out of rows
+  void testEllerRows(Tester t) {
+    EllerRows rows = new EllerRows(23, 17, 9);
+    MazeGrid grid = rows.toGrid();
+    t.checkExpect(rows.hasNext(), false);
+    t.checkExpect(rows.opened, 23L * 17 - 1);
+    t.checkExpect(grid.opened, 23 * 17 - 1);
+    t.checkExpect(this.connected(grid), true);
+    for (int y = 0; y < 17; y++) {
+      t.checkExpect(grid.rightBlocked(grid.index(22, y)), true);
+    }
+    for (int x = 0; x < 23; x++) {
+      t.checkExpect(grid.downBlocked(grid.index(x, 16)), true);
+    }
+    t.checkExpect(new EllerRows(23, 17, 9).toGrid().passages, grid.passages);
+    t.checkExpect(Arrays.equals(new EllerRows(23, 17, 10).toGrid().passages, grid.passages),
+        false);
+    t.checkException(new NoSuchElementException("No rows left"), rows, "next");
+    t.checkConstructorException(new IllegalArgumentException("Invalid board size"),
+        "EllerRows", 1, 5, 0L);
+  }
+
+  // tests that EllerRows reuses its arrays row after row on a tall maze
+  void testEllerTall(Tester t) {
+    // a tall maze streams through the same few arrays however many rows it has
+    EllerRows rows = new EllerRows(40, 200000, 3);
+    long[] first = rows.next();
+    boolean reused = true;
+    while (rows.hasNext()) {
+      reused = reused && rows.next() == first;
+    }
+    t.checkExpect(reused, true);
+    t.checkExpect(rows.opened, 40L * 200000 - 1);
+    t.checkExpect(rows.sets.length, 40);
+  }
+
+  // tests that a maze streamed row by row to a file loads back the same
+  void testStreamToFile(Tester t) throws IOException {
+    MazeFile files = new MazeFile();
+    Path file = this.temp();
+    files.write(new EllerRows(37, 29, 5), 5, file);
+    MazeGrid expected = new EllerRows(37, 29, 5).toGrid();
+    MazeWorld loaded = files.load(file);
+    t.checkExpect(loaded.grid.passages, expected.passages);
+    t.checkExpect(loaded.grid.opened, 37 * 29 - 1);
+    t.checkExpect(loaded.seed, 5L);
+    t.checkExpect(Files.size(file), MazeFile.HEADER + expected.passages.length * 8L);
+  }
+
+  // tests that PagedGrid reads a maze file a page at a time, cannot be changed, and
+  // saves back the same passages
+  void testPagedGrid(Tester t) throws IOException {
+    MazeFile files = new MazeFile();
+    Path file = this.temp();
+    files.write(new EllerRows(50, 300, 8), 8, file);
+    MazeGrid expected = new EllerRows(50, 300, 8).toGrid();
+    MazeWorld view = files.page(file, 2, 3);
+    PagedGrid paged = (PagedGrid) view.grid;
+    int same = 0;
+    for (int id = 0; id < 50 * 300 * 2; id++) {
+      same += paged.isOpen(id) == expected.isOpen(id) ? 1 : 0;
+    }
+    t.checkExpect(same, 50 * 300 * 2);
+    t.checkExpect(paged.pages.size(), 3);
+    t.checkExpect(paged.reads, (expected.passages.length + 1) / 2);
+    t.checkExpect(view.renderer instanceof ViewportRenderer, true);
+    t.checkException(new UnsupportedOperationException("Paged grids are read only"), paged,
+        "open", 0);
+    t.checkException(new UnsupportedOperationException("Paged grids are read only"), paged,
+        "clear");
+    // saving a paged grid reads its pages through, giving back the file's passages
+    t.checkExpect(files.sizeOf(paged), Files.size(file));
+    ByteBuffer out = ByteBuffer.allocate((int) files.sizeOf(paged));
+    files.put(out, paged, 1, 1, 8L);
+    t.checkExpect(out.position(), out.capacity());
+    byte[] saved = Files.readAllBytes(file);
+    t.checkExpect(Arrays.equals(Arrays.copyOfRange(out.array(), MazeFile.HEADER, out.capacity()),
+        Arrays.copyOfRange(saved, MazeFile.HEADER, saved.length)), true);
+    view.animate = false;
+    view.onKeyEvent("b");
+    t.checkExpect(view.result.path, new Solver().solve(expected, new BfsAdd(), 0,
+        expected.cells() - 1).path);
+    view.onKeyEvent("down");
+    view.onKeyEvent("right");
+    t.checkExpect(view.player > 0, true);
+    t.checkExpect(view.makeScene().width, 500);
+    // a new maze replaces the paged one and lets its file go
+    view.onKeyEvent("r");
+    t.checkExpect(paged.channel.isOpen(), false);
+    t.checkExpect(view.grid instanceof PagedGrid, false);
+  }
+
+  // tests that mazes too big for int edge ids are refused before any work is done
+  void testTooLarge(Tester t) throws IOException {
+    MazeFile files = new MazeFile();
+    Path file = this.temp();
+    t.checkException(new IllegalArgumentException("Invalid board size"), files, "write",
+        new EllerRows(1 << 16, 1 << 15, 1), 1L, file);
+    t.checkExpect(Files.size(file), 0L);
+    // a header for 2^31 cells with a file of the right size, left sparse
+    ByteBuffer header = ByteBuffer.allocate(MazeFile.HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MazeFile.MAGIC).putInt(MazeFile.VERSION).putInt(1 << 16).putInt(1 << 15);
+    Files.write(file, header.array());
+    try (RandomAccessFile sparse = new RandomAccessFile(file.toFile(), "rw")) {
+      sparse.setLength(MazeFile.HEADER + (1L << 32) / 64 * 8);
+    }
+    t.checkException(new IOException("Maze too large to page"), files, "page", file, 16, 2);
+    t.checkException(new IOException("Maze too large to load"), files, "load", file);
+    Files.write(file, new byte[0]);
+  }
+}